@@ -0,0 +1,141 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * A small JMH-style harness for the engine and rendering hot paths.
+ * Each benchmark runs warmup iterations, then measurement iterations of a fixed
+ * wall-clock length, and reports the average time per operation together with
+ * the allocation rate measured the same way as JMH's "-prof gc" (per-thread
+ * allocated bytes from the HotSpot ThreadMXBean).
+ *
+ * JMH itself cannot be used here: its generator rejects benchmark classes in the
+ * default package, and every game class lives in the default package.
+ *
+ * Usage (from the project root):
+ *   mvn -B -Pbenchmarks compile exec:exec [-Dbench.args="filter -wi 3 -i 5 -t 1000"]
+ * or
+ *   javac -d out src/*.java bench/*.java
+ *   java -Djava.awt.headless=true -cp out BenchmarkRunner [filter] [-wi n] [-i n] [-t millis]
+ */
+public class BenchmarkRunner {
+
+    /**
+     * A single benchmark. The int it returns is consumed so the JIT cannot drop the work.
+     */
+    public static class Benchmark {
+        final String name;
+        final IntSupplier operation;
+
+        public Benchmark(String name, IntSupplier operation) {
+            this.name = name;
+            this.operation = operation;
+        }
+    }
+
+    private static volatile int sink;
+
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationMillis = 1000;
+    private String filter = "";
+
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        runner.parseArgs(args);
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(BoardBenchmarks.all());
+        benchmarks.addAll(RenderBenchmarks.all());
+        benchmarks.addAll(SessionStoreBenchmarks.all());
+        runner.run(benchmarks);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": measurementIterations = Integer.parseInt(args[++i]); break;
+                case "-t": iterationMillis = Long.parseLong(args[++i]); break;
+                default: filter = args[i];
+            }
+        }
+    }
+
+    private void run(List<Benchmark> benchmarks) {
+        List<String> rows = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            if (!benchmark.name.contains(filter)) continue;
+            System.out.println("# Benchmark: " + benchmark.name);
+            for (int i = 1; i <= warmupIterations; i++) {
+                Result r = iteration(benchmark);
+                System.out.printf("# Warmup Iteration %2d: %12.3f ns/op%n", i, r.nanosPerOp);
+            }
+            double[] scores = new double[measurementIterations];
+            double bytesPerOp = 0;
+            double bytesPerSecond = 0;
+            for (int i = 0; i < measurementIterations; i++) {
+                Result r = iteration(benchmark);
+                scores[i] = r.nanosPerOp;
+                bytesPerOp += r.bytesPerOp / measurementIterations;
+                bytesPerSecond += r.bytesPerSecond / measurementIterations;
+                System.out.printf("Iteration %2d: %12.3f ns/op%n", i + 1, r.nanosPerOp);
+            }
+            rows.add(String.format("%-36s avgt %3d %12.3f +- %10.3f ns/op %12.1f B/op %10.1f MB/sec",
+                    benchmark.name, measurementIterations, mean(scores), stdDev(scores),
+                    bytesPerOp, bytesPerSecond / (1024 * 1024)));
+            System.out.println();
+        }
+        System.out.printf("%-36s Mode Cnt %12s   %10s %6s %12s %17s%n",
+                "Benchmark", "Score", "Error", "Units", "gc.alloc.norm", "gc.alloc.rate");
+        rows.forEach(System.out::println);
+    }
+
+    private static class Result {
+        double nanosPerOp;
+        double bytesPerOp;
+        double bytesPerSecond;
+    }
+
+    private Result iteration(Benchmark benchmark) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long ops = 0;
+        int local = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long now;
+        do {
+            for (int i = 0; i < 64; i++) {
+                local += benchmark.operation.getAsInt();
+            }
+            ops += 64;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        sink += local;
+
+        Result r = new Result();
+        long elapsed = now - start;
+        r.nanosPerOp = (double) elapsed / ops;
+        r.bytesPerOp = (double) bytes / ops;
+        r.bytesPerSecond = bytes * 1e9 / elapsed;
+        return r;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+
+    private static double stdDev(double[] values) {
+        if (values.length < 2) return 0;
+        double mean = mean(values);
+        double sum = 0;
+        for (double v : values) sum += (v - mean) * (v - mean);
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
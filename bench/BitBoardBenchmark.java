@@ -0,0 +1,169 @@
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the bitboard-backed Board against the original object-grid scans.
+ * Boards come from a fixed seed so every run measures the same positions; they
+ * are settled (match-free) boards, the state both scans see during play.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out BitBoardBenchmark
+ */
+public class BitBoardBenchmark {
+
+    private static final int BOARDS = 1024;
+    private static final int ROUNDS = 200;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        Jewel[][][] grids = new Jewel[BOARDS][][];
+        Board[] boards = new Board[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            grids[i] = settledGrid(random);
+            boards[i] = toBoard(grids[i]);
+        }
+
+        verify(grids, boards);
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runObjectGrid(grids);
+            runBitBoard(boards);
+        }
+        long objectGridNanos = runObjectGrid(grids);
+        long bitBoardNanos = runBitBoard(boards);
+
+        long calls = (long) BOARDS * ROUNDS;
+        System.out.printf("object grid : %8.1f ns per findAllMatches + hasValidMoves%n", (double) objectGridNanos / calls);
+        System.out.printf("bitboard    : %8.1f ns per findAllMatches + hasValidMoves%n", (double) bitBoardNanos / calls);
+        System.out.printf("speedup     : %8.1fx%n", (double) objectGridNanos / bitBoardNanos);
+    }
+
+    private static long runObjectGrid(Jewel[][][] grids) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Jewel[][] grid : grids) {
+                sink += ObjectGrid.findAllMatches(grid).size();
+                if (ObjectGrid.hasValidMoves(grid)) sink++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static long runBitBoard(Board[] boards) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Board board : boards) {
+                sink += board.findAllMatches().size();
+                if (board.hasValidMoves()) sink++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static void verify(Jewel[][][] grids, Board[] boards) {
+        for (int i = 0; i < grids.length; i++) {
+            Set<Point> expected = ObjectGrid.findAllMatches(grids[i]);
+            if (!expected.equals(boards[i].findAllMatches())) {
+                throw new IllegalStateException("findAllMatches differs on board " + i);
+            }
+            if (expected.isEmpty() && ObjectGrid.hasValidMoves(grids[i]) != boards[i].hasValidMoves()) {
+                throw new IllegalStateException("hasValidMoves differs on board " + i);
+            }
+        }
+    }
+
+    private static Jewel[][] settledGrid(Random random) {
+        JewelType[] types = JewelType.values();
+        Jewel[][] grid = new Jewel[BitBoard.SIZE][BitBoard.SIZE];
+        do {
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) {
+                    grid[r][c] = Jewel.of(types[random.nextInt(types.length)]);
+                }
+            }
+        } while (!ObjectGrid.findAllMatches(grid).isEmpty());
+        return grid;
+    }
+
+    private static Board toBoard(Jewel[][] grid) {
+        Board board = new Board();
+        for (int r = 0; r < BitBoard.SIZE; r++) {
+            for (int c = 0; c < BitBoard.SIZE; c++) {
+                board.setJewel(r, c, grid[r][c]);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * The original cell-by-cell scans over a Jewel grid, kept as the reference.
+     */
+    private static class ObjectGrid {
+
+        static Set<Point> findAllMatches(Jewel[][] grid) {
+            Set<Point> matches = new HashSet<>();
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE - 2; ) {
+                    List<Point> line = findLine(grid, r, c, 0, 1);
+                    matches.addAll(line);
+                    c += line.isEmpty() ? 1 : line.size();
+                }
+            }
+            for (int c = 0; c < BitBoard.SIZE; c++) {
+                for (int r = 0; r < BitBoard.SIZE - 2; ) {
+                    List<Point> line = findLine(grid, r, c, 1, 0);
+                    matches.addAll(line);
+                    r += line.isEmpty() ? 1 : line.size();
+                }
+            }
+            return matches;
+        }
+
+        static boolean hasValidMoves(Jewel[][] grid) {
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) {
+                    if (c < BitBoard.SIZE - 1 && wouldSwapCreateMatch(grid, r, c, r, c + 1)) return true;
+                    if (r < BitBoard.SIZE - 1 && wouldSwapCreateMatch(grid, r, c, r + 1, c)) return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean wouldSwapCreateMatch(Jewel[][] grid, int r1, int c1, int r2, int c2) {
+            swap(grid, r1, c1, r2, c2);
+            boolean hasMatch = !findAllMatches(grid).isEmpty();
+            swap(grid, r1, c1, r2, c2);
+            return hasMatch;
+        }
+
+        private static void swap(Jewel[][] grid, int r1, int c1, int r2, int c2) {
+            Jewel temp = grid[r1][c1];
+            grid[r1][c1] = grid[r2][c2];
+            grid[r2][c2] = temp;
+        }
+
+        private static List<Point> findLine(Jewel[][] grid, int r, int c, int dr, int dc) {
+            List<Point> line = new ArrayList<>();
+            JewelType type = grid[r][c].getType();
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                int newR = r + i * dr;
+                int newC = c + i * dc;
+                if (newR >= BitBoard.SIZE || newC >= BitBoard.SIZE || grid[newR][newC].getType() != type) break;
+                line.add(new Point(newR, newC));
+            }
+            return line.size() >= 3 ? line : new ArrayList<>();
+        }
+    }
+}
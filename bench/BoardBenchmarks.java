@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks for the Board and TurnEngine hot paths.
+ * Operations that mutate the board first load a fixture into a reused Board;
+ * "loadFixture" measures that step alone so it can be subtracted.
+ */
+public class BoardBenchmarks {
+
+    private BoardBenchmarks() {}
+
+    public static List<BenchmarkRunner.Benchmark> all() {
+        Jewel[][][] settled = BoardFixtures.settled();
+        Jewel[][][] withMatches = BoardFixtures.withMatches();
+        Jewel[][][] withHoles = BoardFixtures.withHoles();
+        Jewel[][][] withPowerUps = BoardFixtures.withPowerUps();
+        Move[] firstMoves = firstLegalMoves(settled);
+        Board board = new Board(new GameRandom(BoardFixtures.SEED));
+        int[] next = new int[1];
+
+        List<BenchmarkRunner.Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.loadFixture", () -> {
+            BoardFixtures.load(board, settled[next(next)]);
+            return 0;
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.findAllMatches", () -> {
+            BoardFixtures.load(board, withMatches[next(next)]);
+            return board.findAllMatches().size();
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.findMatches.packed", () -> {
+            BoardFixtures.load(board, withMatches[next(next)]);
+            return board.findMatches().size();
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.hasValidMoves", () -> {
+            BoardFixtures.load(board, settled[next(next)]);
+            return board.hasValidMoves() ? 1 : 0;
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.populateBoard", () -> {
+            board.populateBoard();
+            return 0;
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.clearAndCreatePowerUps", () -> {
+            BoardFixtures.load(board, withMatches[next(next)]);
+            board.findAllMatches();
+            return board.clearAndCreatePowerUps();
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.clearAndCreatePowerUps.chained", () -> {
+            BoardFixtures.load(board, withPowerUps[next(next)]);
+            board.findMatches();
+            return board.clearAndCreatePowerUps();
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.collapseGrid+refillGrid", () -> {
+            BoardFixtures.load(board, withHoles[next(next)]);
+            int falls = board.collapseGrid().size();
+            board.refillGrid();
+            return falls;
+        }));
+        int[] fallFrom = new int[board.getCellCount()];
+        int[] fallTo = new int[board.getCellCount()];
+        benchmarks.add(new BenchmarkRunner.Benchmark("Board.collapseGrid+refillGrid.packed", () -> {
+            BoardFixtures.load(board, withHoles[next(next)]);
+            int falls = board.collapseGrid(fallFrom, fallTo);
+            board.refillGrid();
+            return falls;
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("TurnEngine.playMove", () -> {
+            int i = next(next);
+            BoardFixtures.load(board, settled[i]);
+            Game game = new Game(GameMode.TIMED, board);
+            return TurnEngine.playMove(game, firstMoves[i].getFrom(), firstMoves[i].getTo()).getPoints();
+        }));
+        TurnEngine engine = new TurnEngine();
+        benchmarks.add(new BenchmarkRunner.Benchmark("TurnEngine.play.packed", () -> {
+            int i = next(next);
+            BoardFixtures.load(board, settled[i]);
+            Game game = new Game(GameMode.TIMED, board);
+            Move move = firstMoves[i];
+            return engine.play(game, board.cellOf(move.getFrom().x, move.getFrom().y),
+                    board.cellOf(move.getTo().x, move.getTo().y)).getPoints();
+        }));
+        return benchmarks;
+    }
+
+    private static int next(int[] cursor) {
+        cursor[0] = (cursor[0] + 1) % BoardFixtures.COUNT;
+        return cursor[0];
+    }
+
+    private static Move[] firstLegalMoves(Jewel[][][] grids) {
+        Move[] moves = new Move[grids.length];
+        Board board = new Board();
+        for (int i = 0; i < grids.length; i++) {
+            BoardFixtures.load(board, grids[i]);
+            moves[i] = board.getLegalMoves().get(0);
+        }
+        return moves;
+    }
+}
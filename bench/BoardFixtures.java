@@ -0,0 +1,103 @@
+import java.util.Random;
+
+/**
+ * Fixed-seed board positions shared by the benchmarks, so every run and every
+ * revision of the engine is measured on exactly the same boards.
+ */
+public class BoardFixtures {
+
+    public static final long SEED = 20240917L;
+    public static final int COUNT = 256;
+
+    private static final JewelType[] TYPES = JewelType.values();
+
+    private BoardFixtures() {}
+
+    /**
+     * @return boards with no matches, the state every turn starts from.
+     */
+    public static Jewel[][][] settled() {
+        Random random = new Random(SEED);
+        Jewel[][][] grids = new Jewel[COUNT][][];
+        Board probe = new Board();
+        for (int i = 0; i < COUNT; i++) {
+            do {
+                grids[i] = randomGrid(random);
+                load(probe, grids[i]);
+            } while (!probe.findAllMatches().isEmpty() || !probe.hasValidMoves());
+        }
+        return grids;
+    }
+
+    /**
+     * @return boards that contain at least one match, as seen mid-cascade.
+     */
+    public static Jewel[][][] withMatches() {
+        Random random = new Random(SEED + 1);
+        Jewel[][][] grids = new Jewel[COUNT][][];
+        Board probe = new Board();
+        for (int i = 0; i < COUNT; i++) {
+            do {
+                grids[i] = randomGrid(random);
+                load(probe, grids[i]);
+            } while (probe.findAllMatches().isEmpty());
+        }
+        return grids;
+    }
+
+    /**
+     * @return boards with matches and power-ups scattered about, so clearing
+     * them sets off chains of blasts.
+     */
+    public static Jewel[][][] withPowerUps() {
+        Random random = new Random(SEED + 2);
+        Jewel[][][] grids = withMatches();
+        for (Jewel[][] grid : grids) {
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) {
+                    int roll = random.nextInt(30);
+                    if (roll < 5) grid[r][c] = grid[r][c].withPowerUp(PowerUpType.FLAME_GEM);
+                    else if (roll == 5) grid[r][c] = grid[r][c].withPowerUp(PowerUpType.HYPER_CUBE);
+                }
+            }
+        }
+        return grids;
+    }
+
+    /**
+     * @return the withMatches boards after their matches were cleared, ready to collapse.
+     */
+    public static Jewel[][][] withHoles() {
+        Jewel[][][] grids = withMatches();
+        Board board = new Board();
+        for (Jewel[][] grid : grids) {
+            load(board, grid);
+            board.findAllMatches();
+            board.clearAndCreatePowerUps();
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) {
+                    grid[r][c] = board.getJewel(r, c);
+                }
+            }
+        }
+        return grids;
+    }
+
+    public static void load(Board board, Jewel[][] grid) {
+        for (int r = 0; r < BitBoard.SIZE; r++) {
+            for (int c = 0; c < BitBoard.SIZE; c++) {
+                board.setJewel(r, c, grid[r][c]);
+            }
+        }
+    }
+
+    private static Jewel[][] randomGrid(Random random) {
+        Jewel[][] grid = new Jewel[BitBoard.SIZE][BitBoard.SIZE];
+        for (int r = 0; r < BitBoard.SIZE; r++) {
+            for (int c = 0; c < BitBoard.SIZE; c++) {
+                grid[r][c] = Jewel.of(TYPES[random.nextInt(TYPES.length)]);
+            }
+        }
+        return grid;
+    }
+}
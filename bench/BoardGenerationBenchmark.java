@@ -0,0 +1,74 @@
+/**
+ * Measures game-start latency: the constructive Board.populateBoard() against the
+ * original regenerate-until-valid loop, which is reproduced here on top of the
+ * same Board so both sides use identical match and move checks.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out BoardGenerationBenchmark
+ */
+public class BoardGenerationBenchmark {
+
+    private static final int GAMES = 200_000;
+
+    public static void main(String[] args) {
+        for (int i = 0; i < GAMES; i++) {
+            Board board = new Board();
+            board.populateBoard();
+            if (!board.findAllMatches().isEmpty() || !board.hasValidMoves()) {
+                throw new IllegalStateException("populateBoard produced an invalid board");
+            }
+        }
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runConstructive();
+            runRejectionSampling();
+        }
+        long constructiveNanos = runConstructive();
+        long[] rounds = new long[1];
+        long rejectionNanos = runRejectionSampling(rounds);
+
+        System.out.printf("rejection loop : %8.1f ns per game start (%.1f boards generated on average)%n",
+                (double) rejectionNanos / GAMES, (double) rounds[0] / GAMES);
+        System.out.printf("constructive   : %8.1f ns per game start%n", (double) constructiveNanos / GAMES);
+        System.out.printf("speedup        : %8.1fx%n", (double) rejectionNanos / constructiveNanos);
+    }
+
+    private static long runConstructive() {
+        long start = System.nanoTime();
+        for (int i = 0; i < GAMES; i++) {
+            new Game(i % 2 == 0 ? GameMode.TIMED : GameMode.MOVES);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runRejectionSampling() {
+        return runRejectionSampling(new long[1]);
+    }
+
+    private static long runRejectionSampling(long[] rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < GAMES; i++) {
+            rounds[0] += populateByRejection(new Board());
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The original populateBoard loop: fill at random until the board has no
+     * match and at least one move.
+     * @return how many boards were generated.
+     */
+    private static int populateByRejection(Board board) {
+        int rounds = 0;
+        do {
+            for (int r = 0; r < BitBoard.SIZE; r++) {
+                for (int c = 0; c < BitBoard.SIZE; c++) {
+                    board.setJewel(r, c, Jewel.of(JewelType.getRandom()));
+                }
+            }
+            rounds++;
+        } while (!board.hasValidMoves() || !board.findAllMatches().isEmpty());
+        return rounds;
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Checks Board's blast propagation against a naive fixpoint, then compares
+ * their speed. The naive version keeps setting off every power-up in the
+ * clear set, a Flame Gem clearing its 3x3 neighbourhood and a Hyper Cube its
+ * whole color, until nothing new is cleared.
+ *
+ * Boards are random with power-ups scattered about, from a fixed seed: 8x8
+ * boards for the bitboard passes and larger ones for the worklist. Each is
+ * checked for the Flame Gems reported as going off and, after
+ * clearAndCreatePowerUps, for exactly the cells cleared, less the new
+ * power-ups.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out ChainReactionBenchmark
+ */
+public class ChainReactionBenchmark {
+
+    private static final int BOARDS_PER_SIZE = 4000;
+    private static final int[] SIZES = {8, 9, 13, 20};
+    private static final int ROUNDS = 200;
+    private static final JewelType[] TYPES = JewelType.values();
+
+    public static void main(String[] args) {
+        Random random = new Random(BoardFixtures.SEED);
+        int checked = 0;
+        int chained = 0;
+        for (int size : SIZES) {
+            for (int i = 0; i < BOARDS_PER_SIZE; i++) {
+                byte[] codes = randomCodes(random, size);
+                Board board = new Board(size, new GameRandom(i));
+                board.loadCodes(codes);
+                CellSet matches = board.findMatches();
+                if (matches.isEmpty()) continue;
+                if (verify(board, size, codes, matches)) chained++;
+                checked++;
+            }
+        }
+        System.out.printf("checked %d boards, %d with chain reactions%n", checked, chained);
+
+        Jewel[][][] grids = BoardFixtures.withPowerUps();
+        Board[] boards = new Board[grids.length];
+        byte[][] codes = new byte[grids.length][];
+        CellSet[] matches = new CellSet[grids.length];
+        for (int i = 0; i < grids.length; i++) {
+            boards[i] = new Board(new GameRandom(i));
+            BoardFixtures.load(boards[i], grids[i]);
+            codes[i] = new byte[boards[i].getCellCount()];
+            boards[i].copyCodes(codes[i]);
+            matches[i] = new CellSet(boards[i].getCellCount());
+            matches[i].copyFrom(boards[i].findMatches());
+        }
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runNaive(codes, matches);
+            runBoard(boards, matches);
+        }
+        long naiveNanos = runNaive(codes, matches);
+        long boardNanos = runBoard(boards, matches);
+        long calls = (long) grids.length * ROUNDS;
+        System.out.printf("naive fixpoint : %8.1f ns per blast resolution%n", (double) naiveNanos / calls);
+        System.out.printf("Board          : %8.1f ns per blast resolution%n", (double) boardNanos / calls);
+        System.out.printf("speedup        : %8.1fx%n", (double) naiveNanos / boardNanos);
+    }
+
+    /**
+     * @return true if a power-up was set off by another's blast.
+     */
+    private static boolean verify(Board board, int size, byte[] codes, CellSet matches) {
+        CellSet clear = new CellSet(size * size);
+        CellSet flames = new CellSet(size * size);
+        int fired = Naive.propagate(size, codes, matches, clear, flames);
+        int matchedPowerUps = 0;
+        for (int cell = matches.next(0); cell >= 0; cell = matches.next(cell + 1)) {
+            if (Jewel.powerUpOrdinalOf(codes[cell]) != PowerUpType.NONE.ordinal()) matchedPowerUps++;
+        }
+
+        CellSet centers = new CellSet(size * size);
+        board.findExplosionCenters(matches, centers);
+        if (!sameCells(centers, flames)) {
+            throw new IllegalStateException("Flame Gems set off differ on a " + size + "x" + size + " board");
+        }
+        int cleared = board.clearAndCreatePowerUps();
+        int created = 0;
+        for (int cell = 0; cell < size * size; cell++) {
+            Jewel jewel = board.getJewel(cell);
+            if ((jewel == null) == clear.contains(cell)) continue;
+            // A new power-up stays where its match group was cleared
+            if (jewel != null && jewel.getPowerUp() != PowerUpType.NONE) {
+                created++;
+                continue;
+            }
+            throw new IllegalStateException("Cell " + cell + " cleared wrongly on a " + size + "x" + size + " board");
+        }
+        if (cleared != clear.size() - created) {
+            throw new IllegalStateException("Cleared count " + cleared + ", expected " + (clear.size() - created));
+        }
+        return fired > matchedPowerUps;
+    }
+
+    private static boolean sameCells(CellSet a, CellSet b) {
+        for (int cell = 0; cell < a.capacity(); cell++) {
+            if (a.contains(cell) != b.contains(cell)) return false;
+        }
+        return true;
+    }
+
+    private static long runNaive(byte[][] codes, CellSet[] matches) {
+        CellSet clear = new CellSet(BitBoard.SIZE * BitBoard.SIZE);
+        CellSet flames = new CellSet(BitBoard.SIZE * BitBoard.SIZE);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < codes.length; i++) {
+                sink += Naive.propagate(BitBoard.SIZE, codes[i], matches[i], clear, flames);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static long runBoard(Board[] boards, CellSet[] matches) {
+        CellSet centers = new CellSet(BitBoard.SIZE * BitBoard.SIZE);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < boards.length; i++) {
+                boards[i].findExplosionCenters(matches[i], centers);
+                sink += centers.size();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    /**
+     * About one jewel in seven a Flame Gem and one in twenty a Hyper Cube.
+     */
+    private static byte[] randomCodes(Random random, int size) {
+        byte[] codes = new byte[size * size];
+        for (int cell = 0; cell < codes.length; cell++) {
+            int roll = random.nextInt(20);
+            PowerUpType powerUp = roll == 0 ? PowerUpType.HYPER_CUBE : roll < 4 ? PowerUpType.FLAME_GEM : PowerUpType.NONE;
+            codes[cell] = (byte) Jewel.codeOf(TYPES[random.nextInt(TYPES.length)], powerUp);
+        }
+        return codes;
+    }
+
+    /**
+     * The reference: a plain worklist over the cells, with no masks.
+     */
+    private static class Naive {
+
+        /**
+         * Fills clear with the matches and everything their blasts reach, and
+         * flames with the Flame Gems set off.
+         * @return how many power-ups went off.
+         */
+        static int propagate(int size, byte[] codes, CellSet matches, CellSet clear, CellSet flames) {
+            clear.copyFrom(matches);
+            flames.clear();
+            Deque<Integer> pending = new ArrayDeque<>();
+            for (int cell = matches.next(0); cell >= 0; cell = matches.next(cell + 1)) pending.add(cell);
+            int fired = 0;
+            while (!pending.isEmpty()) {
+                int cell = pending.poll();
+                int powerUp = Jewel.powerUpOrdinalOf(codes[cell]);
+                if (powerUp == PowerUpType.NONE.ordinal()) continue;
+                fired++;
+                if (powerUp == PowerUpType.FLAME_GEM.ordinal()) {
+                    flames.add(cell);
+                    int row = cell / size;
+                    int col = cell % size;
+                    for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                        for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                            hit(r * size + c, clear, pending);
+                        }
+                    }
+                } else {
+                    int type = Jewel.typeOrdinalOf(codes[cell]);
+                    for (int other = 0; other < codes.length; other++) {
+                        if (Jewel.typeOrdinalOf(codes[other]) == type) hit(other, clear, pending);
+                    }
+                }
+            }
+            return fired;
+        }
+
+        private static void hit(int cell, CellSet clear, Deque<Integer> pending) {
+            if (clear.contains(cell)) return;
+            clear.add(cell);
+            pending.add(cell);
+        }
+    }
+}
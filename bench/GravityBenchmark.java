@@ -0,0 +1,185 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks collapse and refill against digests recorded on the build before
+ * columns were compacted one pass at a time and refilled from bulk color
+ * draws, then times them. Seeded random games on 8x8, 9x9 and 13x13 boards
+ * are digested turn by turn from the board hash and score; on 200x200 and
+ * 300x300 boards, which collapse and refill in strips, cells are knocked out
+ * and the falls and hashes digested pass by pass. Any change to which cell a
+ * jewel lands in or which color a hole gets changes the digest, and with it
+ * every saved game and replay.
+ *
+ * Step-by-step games also check each CascadeStep's falls and spawns, what the
+ * GUI animates: applying the falls to the cleared board and dropping new
+ * jewels into the spawn cells, from above their columns, must give the
+ * refilled board.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out GravityBenchmark
+ */
+public class GravityBenchmark {
+
+    private static final int GAMES_PER_SIZE = 1000;
+    private static final int[] GAME_SIZES = {8, 9, 13};
+    private static final int[] LARGE_SIZES = {200, 300};
+    private static final int KNOCKOUT_PASSES = 5;
+    private static final int ROUNDS = 200;
+
+    // Recorded on the previous build, in the order of GAME_SIZES then LARGE_SIZES
+    private static final long[] DIGESTS = {
+        0x5196722767ce57c5L, 0x1cef2a56772d4f7bL, 0xb3f08bfe650b98dfL, 0xc62ec625a64431f9L, 0xaa975a2e4d463546L,
+    };
+
+    public static void main(String[] args) {
+        int fixture = 0;
+        for (int size : GAME_SIZES) check(size, gameDigest(size), DIGESTS[fixture++]);
+        for (int size : LARGE_SIZES) check(size, largeDigest(size), DIGESTS[fixture++]);
+        System.out.printf("digests match on %s and %s boards%n", Arrays.toString(GAME_SIZES), Arrays.toString(LARGE_SIZES));
+
+        int steps = 0;
+        for (int size : GAME_SIZES) steps += checkSteps(size);
+        System.out.printf("checked the falls and spawns of %d cascade steps%n", steps);
+
+        Jewel[][][] grids = BoardFixtures.withHoles();
+        Board[] boards = new Board[grids.length];
+        for (int i = 0; i < grids.length; i++) boards[i] = new Board(new GameRandom(i));
+        for (int warmup = 0; warmup < 3; warmup++) runGravity(boards, grids);
+        long nanos = runGravity(boards, grids);
+        System.out.printf("collapse + refill : %8.1f ns per board%n", (double) nanos / ((long) grids.length * ROUNDS));
+    }
+
+    private static void check(int size, long digest, long expected) {
+        if (digest != expected) {
+            throw new IllegalStateException(String.format("Digest on %dx%d boards is %016x, expected %016x",
+                    size, size, digest, expected));
+        }
+    }
+
+    /**
+     * Plays random legal moves to the end of seeded MOVES games.
+     */
+    private static long gameDigest(int size) {
+        long digest = 0;
+        TurnEngine engine = new TurnEngine();
+        for (long seed = 1; seed <= GAMES_PER_SIZE; seed++) {
+            Board board = new Board(size, new GameRandom(seed));
+            board.populateBoard();
+            Game game = new Game(GameMode.MOVES, board);
+            GameRandom pick = new GameRandom(seed * 7);
+            while (!game.isGameOver()) {
+                List<Move> moves = board.getLegalMoves();
+                if (moves.isEmpty()) break;
+                Move move = moves.get(pick.nextInt(moves.size()));
+                engine.play(game, board.cellOf(move.getFrom().x, move.getFrom().y), board.cellOf(move.getTo().x, move.getTo().y));
+                digest = digest * 31 + board.getHash() + game.getScore();
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Knocks out one cell in twenty at random, then collapses and refills.
+     */
+    private static long largeDigest(int size) {
+        long digest = 0;
+        Board board = new Board(size, new GameRandom(size));
+        board.populateBoard();
+        GameRandom knock = new GameRandom(5);
+        int cellCount = size * size;
+        int[] fallFrom = new int[cellCount];
+        int[] fallTo = new int[cellCount];
+        for (int pass = 0; pass < KNOCKOUT_PASSES; pass++) {
+            for (int i = 0; i < cellCount / 20; i++) board.setJewel(knock.nextInt(cellCount), null);
+            int falls = board.collapseGrid(fallFrom, fallTo);
+            for (int i = 0; i < falls; i++) digest = digest * 31 + fallFrom[i] * 7919L + fallTo[i];
+            board.refillGrid();
+            digest = digest * 31 + board.getHash() + falls;
+        }
+        return digest;
+    }
+
+    /**
+     * Plays seeded games one cascade step at a time, as the GUI does.
+     * @return the number of steps checked.
+     */
+    private static int checkSteps(int size) {
+        int steps = 0;
+        int cellCount = size * size;
+        byte[] cleared = new byte[cellCount];
+        byte[] expected = new byte[cellCount];
+        byte[] refilled = new byte[cellCount];
+        for (long seed = 1; seed <= GAMES_PER_SIZE / 10; seed++) {
+            Board board = new Board(size, new GameRandom(seed));
+            board.populateBoard();
+            Game game = new Game(GameMode.MOVES, board);
+            GameRandom pick = new GameRandom(seed * 7);
+            while (!game.isGameOver()) {
+                List<Move> moves = board.getLegalMoves();
+                if (moves.isEmpty()) break;
+                Move move = moves.get(pick.nextInt(moves.size()));
+                if (!TurnEngine.trySwap(game, move.getFrom(), move.getTo())) throw new IllegalStateException("Legal move " + move + " refused");
+                for (int chain = 1; ; chain++) {
+                    CascadeStep step = TurnEngine.findStep(game, chain);
+                    if (step == null) break;
+                    TurnEngine.clear(game, step);
+                    board.copyCodes(cleared);
+                    TurnEngine.collapse(game, step);
+                    TurnEngine.refill(game);
+                    board.copyCodes(refilled);
+                    checkStep(size, step, cleared, expected, refilled);
+                    steps++;
+                }
+                TurnEngine.settle(game);
+            }
+        }
+        return steps;
+    }
+
+    private static void checkStep(int size, CascadeStep step, byte[] cleared, byte[] expected, byte[] refilled) {
+        String where = "Step on a " + size + "x" + size + " board";
+        System.arraycopy(cleared, 0, expected, 0, cleared.length);
+        for (int i = 0; i < step.getFallCount(); i++) expected[step.getFallFrom(i)] = Jewel.EMPTY_CODE;
+        for (int i = 0; i < step.getFallCount(); i++) {
+            int from = step.getFallFrom(i);
+            int to = step.getFallTo(i);
+            if (to % size != from % size || to <= from) throw new IllegalStateException(where + " has a fall out of its column");
+            if (expected[to] != Jewel.EMPTY_CODE) throw new IllegalStateException(where + " drops two jewels into cell " + to);
+            expected[to] = cleared[from];
+        }
+        int[] spawnsInColumn = new int[size];
+        for (int i = 0; i < step.getSpawnCount(); i++) spawnsInColumn[step.getSpawnTo(i) % size]++;
+        for (int i = 0; i < step.getSpawnCount(); i++) {
+            int to = step.getSpawnTo(i);
+            // New jewels keep their order and fall as far as the column's holes go
+            if (to / size - step.getSpawnFromRow(i) != spawnsInColumn[to % size]) {
+                throw new IllegalStateException(where + " drops a new jewel into cell " + to + " from row " + step.getSpawnFromRow(i));
+            }
+            if (expected[to] != Jewel.EMPTY_CODE) throw new IllegalStateException(where + " spawns into a full cell " + to);
+            expected[to] = refilled[to];
+        }
+        for (int cell = 0; cell < expected.length; cell++) {
+            if (expected[cell] != refilled[cell]) throw new IllegalStateException(where + " leaves cell " + cell + " unexplained");
+        }
+    }
+
+    private static long runGravity(Board[] boards, Jewel[][][] grids) {
+        int[] fallFrom = new int[BitBoard.SIZE * BitBoard.SIZE];
+        int[] fallTo = new int[BitBoard.SIZE * BitBoard.SIZE];
+        long sink = 0;
+        long elapsed = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < boards.length; i++) {
+                BoardFixtures.load(boards[i], grids[i]);
+                long start = System.nanoTime();
+                sink += boards[i].collapseGrid(fallFrom, fallTo);
+                boards[i].refillGrid();
+                elapsed += System.nanoTime() - start;
+            }
+        }
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the fork/join strips of large boards: findMatches, hasValidMoves and
+ * collapseGrid + refillGrid, for several board sizes and pool sizes.
+ * Each pass knocks out the same fixed-seed set of cells first, so collapse and
+ * refill always have work to do.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out LargeBoardBenchmark [size ...]
+ */
+public class LargeBoardBenchmark {
+
+    private static final int WARMUP_PASSES = 3;
+    private static final int PASSES = 5;
+
+    public static void main(String[] args) {
+        int[] sizes = {128, 512, 1024, 2048};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d cores, strips of %d cells%n", cores, Board.PARALLEL_CUTOFF);
+        System.out.printf("%6s %8s %16s %16s %22s%n", "size", "threads", "findMatches ms", "hasValidMoves ms", "collapse+refill ms");
+        for (int size : sizes) {
+            for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                Board board = new Board(size, new GameRandom(BoardFixtures.SEED), pool);
+                board.populateBoard();
+                int[] fallFrom = new int[board.getCellCount()];
+                int[] fallTo = new int[board.getCellCount()];
+                double[] millis = new double[3];
+                for (int pass = -WARMUP_PASSES; pass < PASSES; pass++) { // negative passes warm up
+                    GameRandom holes = new GameRandom(pass);
+                    for (int i = 0; i < board.getCellCount() / 10; i++) {
+                        board.setJewel(holes.nextInt(board.getCellCount()), null);
+                    }
+                    long t0 = System.nanoTime();
+                    board.collapseGrid(fallFrom, fallTo);
+                    board.refillGrid();
+                    long t1 = System.nanoTime();
+                    board.findMatches();
+                    long t2 = System.nanoTime();
+                    board.hasValidMoves();
+                    long t3 = System.nanoTime();
+                    if (pass >= 0) {
+                        millis[0] += (t2 - t1) / 1e6 / PASSES;
+                        millis[1] += (t3 - t2) / 1e6 / PASSES;
+                        millis[2] += (t1 - t0) / 1e6 / PASSES;
+                    }
+                }
+                System.out.printf("%6d %8d %16.2f %16.2f %22.2f%n", size, threads, millis[0], millis[1], millis[2]);
+                pool.shutdown();
+            }
+        }
+    }
+}
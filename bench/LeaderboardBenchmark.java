@@ -0,0 +1,93 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Fills a leaderboard in a temporary directory with millions of scores, then
+ * times a cold start, the queries, compaction and a cold start after it.
+ * Scores are submitted without waiting, the way many server connections would,
+ * so the committer batches them; commit latency is in the leaderboard.commit
+ * histogram printed at the end.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out LeaderboardBenchmark [entries] [players]
+ */
+public class LeaderboardBenchmark {
+
+    private static final int QUERIES = 200_000;
+    private static final int KEEP_TOP = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path directory = Files.createTempDirectory("crystalyze-leaderboard");
+        try {
+            GameRandom random = new GameRandom(BoardFixtures.SEED);
+            long start = System.nanoTime();
+            try (Leaderboard board = new Leaderboard(directory)) {
+                CompletableFuture<Integer> last = null;
+                for (int i = 0; i < entries; i++) {
+                    last = board.submit(GameMode.values()[i & 1], "player" + random.nextInt(players),
+                            score(random), random.nextLong());
+                }
+                last.get();
+            }
+            report("submit + commit", start, entries, "entries");
+
+            start = System.nanoTime();
+            Leaderboard board = new Leaderboard(directory);
+            System.out.printf("%-24s %10.1f ms for %d entries%n", "cold start",
+                    (System.nanoTime() - start) / 1e6, board.size(GameMode.TIMED) + board.size(GameMode.MOVES));
+
+            int sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) sink += board.rankOf(GameMode.TIMED, score(random));
+            report("rankOf", start, QUERIES, "queries");
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) sink += board.at(GameMode.TIMED, 1 + random.nextInt(board.size(GameMode.TIMED))).getScore();
+            report("at(rank)", start, QUERIES, "queries");
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                Leaderboard.Entry best = board.best(GameMode.TIMED, "player" + random.nextInt(players));
+                if (best != null) sink += best.getRank();
+            }
+            report("best(player)", start, QUERIES, "queries");
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES / 100; i++) sink += board.top(GameMode.TIMED, 10).size();
+            report("top(10)", start, QUERIES / 100, "queries");
+            System.out.println("Top 3 TIMED: " + board.top(GameMode.TIMED, 3));
+
+            start = System.nanoTime();
+            int dropped = board.compact(GameMode.TIMED, KEEP_TOP) + board.compact(GameMode.MOVES, KEEP_TOP);
+            System.out.printf("%-24s %10.1f ms, dropped %d entries%n", "compact", (System.nanoTime() - start) / 1e6, dropped);
+            board.close();
+
+            start = System.nanoTime();
+            board = new Leaderboard(directory);
+            System.out.printf("%-24s %10.1f ms for %d entries%n", "cold start, compacted",
+                    (System.nanoTime() - start) / 1e6, board.size(GameMode.TIMED) + board.size(GameMode.MOVES));
+            board.close();
+            if (sink == 42) System.out.println();
+            Metrics.dump(System.out);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Roughly the shape of real scores: most games land in the low thousands.
+     */
+    private static int score(GameRandom random) {
+        return 10 * (random.nextInt(300) + random.nextInt(300) + random.nextInt(300));
+    }
+
+    private static void report(String name, long start, int count, String unit) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-24s %10.0f %s/s (%.0f ns each)%n", name, count / seconds, unit, seconds * 1e9 / count);
+    }
+}
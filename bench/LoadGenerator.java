@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a GameServer with many concurrent sessions and reports sessions per
+ * core and swap round-trip latency. Each connection thread opens its share of
+ * sessions (alternating TIMED and MOVES), then plays them round-robin, picking
+ * a random legal swap from the last state the server sent; finished games are
+ * replaced by new ones.
+ *
+ *   java -cp out LoadGenerator [-c connections] [-s sessionsPerConnection]
+ *        [-t seconds] [-think millis] [-addr host:port | -unix path]
+ *
+ * Without -addr or -unix an in-process server is started on a free port, so
+ * the client's own move picking shares the machine with the server.
+ */
+public class LoadGenerator {
+
+    private int connections = 20;
+    private int sessionsPerConnection = 25;
+    private int seconds = 10;
+    private long thinkMillis = 0;
+    private SocketAddress address;
+
+    private final LatencyHistogram latency = new LatencyHistogram("swap round trip");
+    private final AtomicLong swaps = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong gamesFinished = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parseArgs(args);
+        generator.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c": connections = Integer.parseInt(args[++i]); break;
+                case "-s": sessionsPerConnection = Integer.parseInt(args[++i]); break;
+                case "-t": seconds = Integer.parseInt(args[++i]); break;
+                case "-think": thinkMillis = Long.parseLong(args[++i]); break;
+                case "-unix": address = UnixDomainSocketAddress.of(args[++i]); break;
+                case "-addr": {
+                    String[] hostPort = args[++i].split(":");
+                    address = new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+                    break;
+                }
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        GameServer server = null;
+        if (address == null) {
+            server = new GameServer(new InetSocketAddress("127.0.0.1", 0)).start();
+            address = server.getAddress();
+        }
+        int sessions = connections * sessionsPerConnection;
+        System.out.printf("%d sessions over %d connections to %s for %d s, think time %d ms%n",
+                sessions, connections, address, seconds, thinkMillis);
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(connections);
+        for (int c = 0; c < connections; c++) {
+            long seed = 1000L * c + 1;
+            Thread thread = new Thread(() -> {
+                try {
+                    play(seed, deadline);
+                } catch (IOException e) {
+                    System.err.println("Connection failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + c);
+            thread.start();
+        }
+        done.await();
+        if (server != null) server.close();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Cores:              %d%n", cores);
+        System.out.printf("Sessions per core:  %.0f%n", (double) sessions / cores);
+        System.out.printf("Swaps:              %d (%.0f per second), %d refused%n",
+                swaps.get(), swaps.get() / (double) seconds, refused.get());
+        System.out.printf("Games finished:     %d%n", gamesFinished.get());
+        System.out.printf("Swap latency:       p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                latency.getPercentile(0.50) / 1e6, latency.getPercentile(0.99) / 1e6, latency.getMax() / 1e6);
+    }
+
+    private void play(long seed, long deadline) throws IOException {
+        GameRandom random = new GameRandom(seed);
+        try (GameClient client = GameClient.connect(address)) {
+            int[] ids = new int[sessionsPerConnection];
+            ServerProtocol.State[] states = new ServerProtocol.State[sessionsPerConnection];
+            for (int s = 0; s < sessionsPerConnection; s++) {
+                ids[s] = client.newGame(s % 2 == 0 ? GameMode.TIMED : GameMode.MOVES, random.nextLong() | 1);
+                states[s] = client.getState();
+            }
+            while (System.nanoTime() < deadline) {
+                for (int s = 0; s < sessionsPerConnection && System.nanoTime() < deadline; s++) {
+                    if (states[s].isGameOver()) {
+                        client.closeGame(ids[s]);
+                        gamesFinished.incrementAndGet();
+                        ids[s] = client.newGame(states[s].getMode(), random.nextLong() | 1);
+                        states[s] = client.getState();
+                    }
+                    Move move = pickMove(states[s], random);
+                    if (move == null) {
+                        // A dead board the server has not ended yet; ask again later
+                        states[s] = client.state(ids[s]);
+                        continue;
+                    }
+                    int size = states[s].getSize();
+                    long start = System.nanoTime();
+                    int status = client.swap(ids[s], move.getFrom().x * size + move.getFrom().y,
+                            move.getTo().x * size + move.getTo().y);
+                    latency.recordSince(start);
+                    if (status == ServerProtocol.OK) {
+                        swaps.incrementAndGet();
+                        states[s] = client.getState();
+                    } else {
+                        refused.incrementAndGet();
+                        states[s] = client.state(ids[s]);
+                    }
+                }
+                if (thinkMillis > 0) sleep(thinkMillis);
+            }
+            for (int id : ids) client.closeGame(id);
+        }
+    }
+
+    private static Move pickMove(ServerProtocol.State state, GameRandom random) {
+        Board board = new Board(state.getSize(), new GameRandom(0L));
+        for (int r = 0; r < state.getSize(); r++) {
+            for (int c = 0; c < state.getSize(); c++) {
+                board.setJewel(r, c, state.getJewel(r, c));
+            }
+        }
+        List<Move> moves = board.getLegalMoves();
+        return moves.isEmpty() ? null : moves.get(random.nextInt(moves.size()));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
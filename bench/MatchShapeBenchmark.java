@@ -0,0 +1,278 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks Board's match groups against a brute-force classifier, then compares
+ * their speed. The brute force measures every cell's runs by walking out from
+ * it in both directions, floods groups through the cells that share a run, and
+ * takes each group's shape from the most central crossing: L where both runs
+ * end at it, T where one does, CROSS where neither does.
+ *
+ * Boards are random from a fixed seed, with three to five colors so that lines
+ * meet often, half of them after a legal swap: 8x8 boards for the bitboard
+ * crossings and larger ones for the search. Each group is checked for its
+ * cells, size, color, shape and power-up, and for the power-up's cell: the
+ * swapped cell if the swap made the group, else one of its most central
+ * crossings, else the line's start. Every shape must turn up.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out MatchShapeBenchmark
+ */
+public class MatchShapeBenchmark {
+
+    private static final int BOARDS_PER_SIZE = 20000;
+    private static final int[] SIZES = {8, 9, 13};
+    private static final int ROUNDS = 200;
+    private static final JewelType[] TYPES = JewelType.values();
+
+    public static void main(String[] args) {
+        Random random = new Random(BoardFixtures.SEED);
+        Map<MatchShape, Integer> seen = new EnumMap<>(MatchShape.class);
+        int checked = 0;
+        for (int size : SIZES) {
+            byte[] codes = new byte[size * size];
+            for (int i = 0; i < BOARDS_PER_SIZE; i++) {
+                Board board = new Board(size, new GameRandom(i));
+                board.loadCodes(randomCodes(random, size, 3 + random.nextInt(3)));
+                int swap1 = Naive.NO_CELL;
+                int swap2 = Naive.NO_CELL;
+                List<Move> moves = i % 2 == 0 ? board.getLegalMoves() : List.of();
+                if (!moves.isEmpty()) {
+                    Move move = moves.get(random.nextInt(moves.size()));
+                    swap1 = board.cellOf(move.getFrom().x, move.getFrom().y);
+                    swap2 = board.cellOf(move.getTo().x, move.getTo().y);
+                    if (!board.checkAndPerformSwap(swap1, swap2)) {
+                        throw new IllegalStateException("Legal move " + move + " refused");
+                    }
+                }
+                board.copyCodes(codes);
+                board.findMatches();
+                verify(board, size, Naive.classify(size, codes, swap1, swap2), seen);
+                checked++;
+            }
+        }
+        for (MatchShape shape : MatchShape.values()) {
+            if (!seen.containsKey(shape)) throw new IllegalStateException("No " + shape + " group on any board");
+        }
+        System.out.printf("checked %d boards, groups by shape %s%n", checked, seen);
+
+        Jewel[][][] grids = BoardFixtures.withMatches();
+        Board[] boards = new Board[grids.length];
+        byte[][] codes = new byte[grids.length][];
+        for (int i = 0; i < grids.length; i++) {
+            boards[i] = new Board(new GameRandom(i));
+            BoardFixtures.load(boards[i], grids[i]);
+            codes[i] = new byte[boards[i].getCellCount()];
+            boards[i].copyCodes(codes[i]);
+        }
+        for (int warmup = 0; warmup < 3; warmup++) {
+            runNaive(codes);
+            runBoard(boards);
+        }
+        long naiveNanos = runNaive(codes);
+        long boardNanos = runBoard(boards);
+        long calls = (long) grids.length * ROUNDS;
+        System.out.printf("brute force : %8.1f ns per board classified%n", (double) naiveNanos / calls);
+        System.out.printf("Board       : %8.1f ns per board classified%n", (double) boardNanos / calls);
+        System.out.printf("speedup     : %8.1fx%n", (double) naiveNanos / boardNanos);
+    }
+
+    private static void verify(Board board, int size, List<Naive.Group> expected, Map<MatchShape, Integer> seen) {
+        int count = board.getMatchGroupCount();
+        if (count != expected.size()) {
+            throw new IllegalStateException(count + " groups, expected " + expected.size() + " on a " + size + "x" + size + " board");
+        }
+        Naive.Group[] byFirstCell = new Naive.Group[size * size];
+        for (Naive.Group group : expected) byFirstCell[group.cells.next(0)] = group;
+        CellSet cells = new CellSet(size * size);
+        for (int group = 0; group < count; group++) {
+            cells.clear();
+            board.addMatchGroupCells(group, cells);
+            Naive.Group want = cells.isEmpty() ? null : byFirstCell[cells.next(0)];
+            String where = "Group " + group + " on a " + size + "x" + size + " board";
+            if (want == null || !sameCells(cells, want.cells)) throw new IllegalStateException(where + " has the wrong cells");
+            if (board.getMatchGroupSize(group) != want.cells.size()) {
+                throw new IllegalStateException(where + " has size " + board.getMatchGroupSize(group) + ", expected " + want.cells.size());
+            }
+            if (board.getMatchGroupType(group) != TYPES[want.type]) throw new IllegalStateException(where + " has the wrong color");
+            if (board.getMatchShape(group) != want.shape) {
+                throw new IllegalStateException(where + " is " + board.getMatchShape(group) + ", expected " + want.shape);
+            }
+            if (board.getMatchGroupPowerUp(group) != want.powerUp) {
+                throw new IllegalStateException(where + " makes " + board.getMatchGroupPowerUp(group) + ", expected " + want.powerUp);
+            }
+            if (!want.powerUpCells.contains(board.getMatchGroupPowerUpCell(group))) {
+                throw new IllegalStateException(where + " puts its power-up in cell " + board.getMatchGroupPowerUpCell(group));
+            }
+            seen.merge(want.shape, 1, Integer::sum);
+        }
+    }
+
+    private static boolean sameCells(CellSet a, CellSet b) {
+        for (int cell = 0; cell < a.capacity(); cell++) {
+            if (a.contains(cell) != b.contains(cell)) return false;
+        }
+        return true;
+    }
+
+    private static long runNaive(byte[][] codes) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] board : codes) {
+                for (Naive.Group group : Naive.classify(BitBoard.SIZE, board, Naive.NO_CELL, Naive.NO_CELL)) {
+                    sink += group.shape.ordinal();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static long runBoard(Board[] boards) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Board board : boards) {
+                board.findMatches();
+                int count = board.getMatchGroupCount();
+                for (int group = 0; group < count; group++) sink += board.getMatchShape(group).ordinal();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static byte[] randomCodes(Random random, int size, int colors) {
+        byte[] codes = new byte[size * size];
+        for (int cell = 0; cell < codes.length; cell++) {
+            codes[cell] = (byte) Jewel.codeOf(TYPES[random.nextInt(colors)], PowerUpType.NONE);
+        }
+        return codes;
+    }
+
+    /**
+     * The reference: every cell measured on its own, with no line list.
+     */
+    private static class Naive {
+
+        static final int NO_CELL = -1;
+
+        static class Group {
+            final CellSet cells;
+            final CellSet powerUpCells;
+            int type;
+            MatchShape shape;
+            PowerUpType powerUp;
+
+            Group(int cellCount) {
+                cells = new CellSet(cellCount);
+                powerUpCells = new CellSet(cellCount);
+            }
+        }
+
+        /**
+         * @return the match groups, each with the cells its power-up may go in.
+         */
+        static List<Group> classify(int size, byte[] codes, int swap1, int swap2) {
+            int cellCount = size * size;
+            // A cell's run along a row or column, and how far into it the cell sits
+            int[] rowLength = new int[cellCount];
+            int[] rowOffset = new int[cellCount];
+            int[] colLength = new int[cellCount];
+            int[] colOffset = new int[cellCount];
+            for (int cell = 0; cell < cellCount; cell++) {
+                int row = cell / size;
+                int col = cell % size;
+                int type = Jewel.typeOrdinalOf(codes[cell]);
+                int left = 0;
+                while (col - left > 0 && Jewel.typeOrdinalOf(codes[cell - left - 1]) == type) left++;
+                int right = 0;
+                while (col + right < size - 1 && Jewel.typeOrdinalOf(codes[cell + right + 1]) == type) right++;
+                int up = 0;
+                while (row - up > 0 && Jewel.typeOrdinalOf(codes[cell - (up + 1) * size]) == type) up++;
+                int down = 0;
+                while (row + down < size - 1 && Jewel.typeOrdinalOf(codes[cell + (down + 1) * size]) == type) down++;
+                if (left + right + 1 >= 3) {
+                    rowLength[cell] = left + right + 1;
+                    rowOffset[cell] = left;
+                }
+                if (up + down + 1 >= 3) {
+                    colLength[cell] = up + down + 1;
+                    colOffset[cell] = up;
+                }
+            }
+
+            List<Group> groups = new ArrayList<>();
+            boolean[] visited = new boolean[cellCount];
+            Deque<Integer> pending = new ArrayDeque<>();
+            for (int first = 0; first < cellCount; first++) {
+                if (visited[first] || (rowLength[first] == 0 && colLength[first] == 0)) continue;
+                Group group = new Group(cellCount);
+                group.type = Jewel.typeOrdinalOf(codes[first]);
+                int longest = 0;
+                int bend = -1;
+                visited[first] = true;
+                pending.add(first);
+                while (!pending.isEmpty()) {
+                    int cell = pending.poll();
+                    group.cells.add(cell);
+                    longest = Math.max(longest, Math.max(rowLength[cell], colLength[cell]));
+                    if (rowLength[cell] > 0) {
+                        int start = cell - rowOffset[cell];
+                        for (int k = 0; k < rowLength[cell]; k++) visit(start + k, visited, pending);
+                    }
+                    if (colLength[cell] > 0) {
+                        int start = cell - colOffset[cell] * size;
+                        for (int k = 0; k < colLength[cell]; k++) visit(start + k * size, visited, pending);
+                    }
+                    if (rowLength[cell] > 0 && colLength[cell] > 0) {
+                        int crossing = (inside(rowOffset[cell], rowLength[cell]) ? 1 : 0)
+                                + (inside(colOffset[cell], colLength[cell]) ? 1 : 0);
+                        if (crossing > bend) {
+                            bend = crossing;
+                            group.powerUpCells.clear();
+                        }
+                        if (crossing == bend) group.powerUpCells.add(cell);
+                    }
+                }
+                if (bend < 0) {
+                    group.shape = longest >= 5 ? MatchShape.LINE_5 : longest == 4 ? MatchShape.LINE_4 : MatchShape.LINE_3;
+                    group.powerUpCells.add(first);
+                } else {
+                    group.shape = bend == 0 ? MatchShape.L : bend == 1 ? MatchShape.T : MatchShape.CROSS;
+                }
+                group.powerUp = longest >= 5 ? PowerUpType.HYPER_CUBE
+                        : longest == 4 || bend >= 0 ? PowerUpType.FLAME_GEM : PowerUpType.NONE;
+                // The second swapped cell wins if both ended up in one group
+                for (int swapped : new int[] {swap2, swap1}) {
+                    if (swapped != NO_CELL && group.cells.contains(swapped)) {
+                        group.powerUpCells.clear();
+                        group.powerUpCells.add(swapped);
+                        break;
+                    }
+                }
+                groups.add(group);
+            }
+            return groups;
+        }
+
+        private static boolean inside(int offset, int length) {
+            return offset > 0 && offset < length - 1;
+        }
+
+        private static void visit(int cell, boolean[] visited, Deque<Integer> pending) {
+            if (visited[cell]) return;
+            visited[cell] = true;
+            pending.add(cell);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders BoardPanel frames into an offscreen image: a full frame, and the
+ * two-cell region a swap animation repaints. Runs headless.
+ */
+public class RenderBenchmarks {
+
+    private RenderBenchmarks() {}
+
+    public static List<BenchmarkRunner.Benchmark> all() {
+        Board board = new Board();
+        BoardFixtures.load(board, BoardFixtures.settled()[0]);
+        GameSnapshot snapshot = GameSnapshot.of(new Game(GameMode.MOVES, board));
+
+        GameController controller = new GameController(null) {
+            @Override public GameSnapshot getSnapshot() { return snapshot; }
+            @Override public Point getSelectedJewel() { return null; }
+        };
+        BoardPanel panel = new BoardPanel(controller);
+        panel.setSize(panel.getPreferredSize());
+        BufferedImage frame = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+
+        List<BenchmarkRunner.Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new BenchmarkRunner.Benchmark("BoardPanel.paintComponent", () -> {
+            Graphics2D g = frame.createGraphics();
+            try {
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+            return frame.getRGB(0, 0);
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("BoardPanel.paintComponent.swapRegion", () -> {
+            Graphics2D g = frame.createGraphics();
+            try {
+                g.clipRect(3 * BoardPanel.JEWEL_SIZE, 4 * BoardPanel.JEWEL_SIZE, 2 * BoardPanel.JEWEL_SIZE, BoardPanel.JEWEL_SIZE);
+                panel.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+            return frame.getRGB(3 * BoardPanel.JEWEL_SIZE, 4 * BoardPanel.JEWEL_SIZE);
+        }));
+        return benchmarks;
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes, decodes, parks and restores games in a temporary session store.
+ */
+public class SessionStoreBenchmarks {
+
+    private static final int SLOTS = 4096;
+
+    private SessionStoreBenchmarks() {}
+
+    public static List<BenchmarkRunner.Benchmark> all() {
+        Game game = new Game(GameMode.TIMED, BoardFixtures.SEED);
+        byte[] encoded = GameCodec.encode(game);
+        ByteBuffer buffer = ByteBuffer.allocate(encoded.length);
+        SessionStore store;
+        try {
+            Path file = Files.createTempFile("crystalyze-sessions", ".bin");
+            file.toFile().deleteOnExit();
+            Files.delete(file);
+            store = new SessionStore(file, Board.DEFAULT_SIZE, SLOTS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (int slot = 0; slot < SLOTS; slot++) store.save(slot, slot, game);
+        int[] next = new int[1];
+
+        List<BenchmarkRunner.Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new BenchmarkRunner.Benchmark("GameCodec.encode", () -> {
+            buffer.clear();
+            GameCodec.encode(game, buffer);
+            return buffer.get(encoded.length - 1);
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("GameCodec.decode", () -> GameCodec.decode(encoded).getScore()));
+        benchmarks.add(new BenchmarkRunner.Benchmark("SessionStore.save", () -> {
+            int slot = next[0]++ & (SLOTS - 1);
+            store.save(slot, slot, game);
+            return slot;
+        }));
+        benchmarks.add(new BenchmarkRunner.Benchmark("SessionStore.restore", () -> {
+            int slot = next[0]++ & (SLOTS - 1);
+            return store.restore(slot).getScore();
+        }));
+        return benchmarks;
+    }
+}
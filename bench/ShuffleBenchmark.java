@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks Board.shuffle on random boards and on the dead boards real games end
+ * on, then times it. A shuffle that succeeds must keep every jewel, power-ups
+ * included, and leave no match and at least one legal swap, both found by
+ * brute force on the codes. One that fails must leave the board as it was.
+ * Either way it must stop within MAX_SHUFFLE_ATTEMPTS passes, each drawing
+ * once per cell plus the planted move, which a counting random stream checks.
+ *
+ * Random boards come from a fixed seed in 8x8, 9x9 and 13x13, with two to
+ * seven colors, so crowded boards fail and retry, and about one jewel in ten
+ * a power-up. Dead boards come from random MOVES games that end with moves
+ * left.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out ShuffleBenchmark
+ */
+public class ShuffleBenchmark {
+
+    private static final int BOARDS_PER_SIZE = 20000;
+    private static final int[] SIZES = {8, 9, 13};
+    private static final int GAMES = 5000;
+    private static final JewelType[] TYPES = JewelType.values();
+    private static final PowerUpType[] POWER_UPS = PowerUpType.values();
+
+    public static void main(String[] args) {
+        Random random = new Random(BoardFixtures.SEED);
+        int shuffled = 0;
+        int failed = 0;
+        for (int size : SIZES) {
+            for (int i = 0; i < BOARDS_PER_SIZE; i++) {
+                byte[] codes = randomCodes(random, size, 2 + random.nextInt(TYPES.length - 1));
+                if (verify(size, codes, random.nextLong())) shuffled++;
+                else failed++;
+            }
+        }
+        System.out.printf("random boards : %d shuffled, %d left as they were%n", shuffled, failed);
+
+        byte[][] dead = deadBoards();
+        int deadFailed = 0;
+        for (int i = 0; i < dead.length; i++) {
+            if (!verify(BitBoard.SIZE, dead[i], i)) deadFailed++;
+        }
+        System.out.printf("dead boards   : %d from %d games, %d left as they were%n", dead.length, GAMES, deadFailed);
+
+        Board[] boards = new Board[dead.length];
+        for (int i = 0; i < dead.length; i++) boards[i] = new Board(new GameRandom(i));
+        for (int warmup = 0; warmup < 3; warmup++) runShuffle(boards, dead);
+        long nanos = runShuffle(boards, dead);
+        System.out.printf("shuffle       : %8.1f ns per dead board%n", (double) nanos / dead.length);
+    }
+
+    /**
+     * Shuffles a board holding the codes.
+     * @return true if the shuffle succeeded.
+     */
+    private static boolean verify(int size, byte[] codes, long seed) {
+        CountingRandom random = new CountingRandom(seed);
+        Board board = new Board(size, random);
+        board.loadCodes(codes);
+        random.draws = 0;
+        boolean done = board.shuffle();
+        String where = "Shuffle on a " + size + "x" + size + " board";
+        long limit = (long) Board.MAX_SHUFFLE_ATTEMPTS * (size * size + 7);
+        if (random.draws > limit) throw new IllegalStateException(where + " drew " + random.draws + " times, over " + limit);
+
+        byte[] after = new byte[size * size];
+        board.copyCodes(after);
+        if (!done) {
+            if (!Arrays.equals(after, codes)) throw new IllegalStateException(where + " failed without restoring the board");
+            return false;
+        }
+        if (!Arrays.equals(census(codes), census(after))) throw new IllegalStateException(where + " changed the jewels");
+        if (hasLine(size, after)) throw new IllegalStateException(where + " left a match");
+        if (!hasLegalSwap(size, after)) throw new IllegalStateException(where + " left no legal swap");
+        if (!board.findMatches().isEmpty() || !board.hasValidMoves()) {
+            throw new IllegalStateException(where + " disagrees with the board's own checks");
+        }
+        return true;
+    }
+
+    private static int[] census(byte[] codes) {
+        int[] counts = new int[Jewel.CODE_COUNT];
+        for (byte code : codes) counts[code]++;
+        return counts;
+    }
+
+    private static boolean hasLine(int size, byte[] codes) {
+        for (int cell = 0; cell < codes.length; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int type = Jewel.typeOrdinalOf(codes[cell]);
+            if (col + 2 < size && Jewel.typeOrdinalOf(codes[cell + 1]) == type
+                    && Jewel.typeOrdinalOf(codes[cell + 2]) == type) return true;
+            if (row + 2 < size && Jewel.typeOrdinalOf(codes[cell + size]) == type
+                    && Jewel.typeOrdinalOf(codes[cell + 2 * size]) == type) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A swap is legal if it moves a Hyper Cube or makes a line anywhere.
+     */
+    private static boolean hasLegalSwap(int size, byte[] codes) {
+        byte[] swapped = codes.clone();
+        for (int cell = 0; cell < codes.length; cell++) {
+            for (int other : new int[] {cell % size + 1 < size ? cell + 1 : -1, cell + size < codes.length ? cell + size : -1}) {
+                if (other < 0) continue;
+                if (Jewel.powerUpOrdinalOf(codes[cell]) == PowerUpType.HYPER_CUBE.ordinal()
+                        || Jewel.powerUpOrdinalOf(codes[other]) == PowerUpType.HYPER_CUBE.ordinal()) return true;
+                swapped[cell] = codes[other];
+                swapped[other] = codes[cell];
+                boolean line = hasLine(size, swapped);
+                swapped[cell] = codes[cell];
+                swapped[other] = codes[other];
+                if (line) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the boards random MOVES games end on with moves left.
+     */
+    private static byte[][] deadBoards() {
+        byte[][] boards = new byte[GAMES][];
+        int count = 0;
+        TurnEngine engine = new TurnEngine();
+        for (long seed = 1; seed <= GAMES; seed++) {
+            Game game = new Game(GameMode.MOVES, seed);
+            GameRandom pick = new GameRandom(seed);
+            while (!game.isGameOver()) {
+                int moves = game.getBoard().getMoveIndex().countMoves();
+                int swap = MovePolicy.legalSwap(game.getBoard(), pick.nextInt(moves));
+                engine.play(game, MovePolicy.fromCell(swap), MovePolicy.toCell(swap));
+            }
+            if (game.getMovesLeft() == 0) continue;
+            boards[count] = new byte[game.getBoard().getCellCount()];
+            game.getBoard().copyCodes(boards[count++]);
+        }
+        return Arrays.copyOf(boards, count);
+    }
+
+    private static long runShuffle(Board[] boards, byte[][] codes) {
+        long sink = 0;
+        long elapsed = 0;
+        for (int i = 0; i < boards.length; i++) {
+            boards[i].loadCodes(codes[i]);
+            long start = System.nanoTime();
+            if (boards[i].shuffle()) sink++;
+            elapsed += System.nanoTime() - start;
+        }
+        if (sink == 42) System.out.print("");
+        return elapsed;
+    }
+
+    private static byte[] randomCodes(Random random, int size, int colors) {
+        byte[] codes = new byte[size * size];
+        for (int cell = 0; cell < codes.length; cell++) {
+            PowerUpType powerUp = random.nextInt(10) == 0 ? POWER_UPS[1 + random.nextInt(POWER_UPS.length - 1)] : PowerUpType.NONE;
+            codes[cell] = (byte) Jewel.codeOf(TYPES[random.nextInt(colors)], powerUp);
+        }
+        return codes;
+    }
+
+    /**
+     * Counts the draws shuffle makes; bounded draws take one each but for
+     * rare rejections.
+     */
+    private static class CountingRandom extends GameRandom {
+        long draws;
+
+        CountingRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public long nextLong() {
+            draws++;
+            return super.nextLong();
+        }
+    }
+}
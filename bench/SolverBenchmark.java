@@ -0,0 +1,69 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures solver throughput (simulated turns per second) for growing pool
+ * sizes, to size hardware for bot traffic, and compares the score of a
+ * solver-driven player against always playing the first legal swap.
+ * Positions come from fixed seeds, so runs are comparable.
+ *
+ * Usage (from the project root):
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out SolverBenchmark [budgetMillis] [games]
+ */
+public class SolverBenchmark {
+
+    private static final int POSITIONS = 16;
+
+    public static void main(String[] args) {
+        long budget = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%d cores, %d ms per search%n", cores, budget);
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            Solver solver = new Solver(pool, Solver.DEFAULT_SAMPLES, Solver.DEFAULT_MAX_DEPTH, 18);
+            solve(solver, budget); // warm-up
+            long nodes = 0;
+            long nanos = 0;
+            int depth = 0;
+            for (SolverResult result : solve(solver, budget)) {
+                nodes += result.getNodes();
+                nanos += result.getElapsedNanos();
+                depth += result.getDepth();
+            }
+            System.out.printf("threads %2d : %10.0f nodes/s, mean depth %.1f%n",
+                    threads, nodes * 1e9 / nanos, (double) depth / POSITIONS);
+            pool.shutdown();
+        }
+
+        Solver solver = new Solver();
+        long solverScore = 0;
+        long firstMoveScore = 0;
+        for (int i = 0; i < games; i++) {
+            solverScore += play(new Game(GameMode.MOVES, i), solver, budget / 4);
+            firstMoveScore += play(new Game(GameMode.MOVES, i), null, 0);
+        }
+        System.out.printf("MOVES mode, %d games: solver %d, first legal swap %d mean score%n",
+                games, solverScore / games, firstMoveScore / games);
+    }
+
+    private static SolverResult[] solve(Solver solver, long budget) {
+        SolverResult[] results = new SolverResult[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            Game game = new Game(GameMode.MOVES, BoardFixtures.SEED + i);
+            results[i] = solver.solve(game.getBoard(), budget);
+        }
+        return results;
+    }
+
+    private static int play(Game game, Solver solver, long budget) {
+        while (!game.isGameOver()) {
+            Move move = solver != null
+                    ? solver.solve(game.getBoard(), budget).getMove()
+                    : game.getBoard().getLegalMoves().get(0);
+            TurnEngine.playMove(game, move.getFrom(), move.getTo());
+        }
+        return game.getScore();
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * Drives every running animation from one Swing timer on the event thread.
+ *
+ * Progress is computed from System.nanoTime() rather than counted in ticks,
+ * so an animation lasts its duration however late or coalesced the ticks
+ * are; a slow frame is skipped over instead of stretching the animation. The
+ * timer runs only while an animation is active.
+ *
+ * The clock also records frame intervals and counts missed frames, ticks that
+ * came more than one period late.
+ */
+public class AnimationClock {
+
+    /**
+     * Called on every frame with the animation's progress, from 0 to 1.
+     */
+    public interface FrameListener {
+        void frame(float progress);
+    }
+
+    /**
+     * A running animation; cancel stops it without calling its finish action.
+     */
+    public final class Animation {
+        private final long start;
+        private final long duration;
+        private final FrameListener listener;
+        private final Runnable onFinish;
+
+        private Animation(long start, long duration, FrameListener listener, Runnable onFinish) {
+            this.start = start;
+            this.duration = duration;
+            this.listener = listener;
+            this.onFinish = onFinish;
+        }
+
+        public void cancel() {
+            if (active.remove(this) && active.isEmpty()) timer.stop();
+        }
+
+        public boolean isRunning() {
+            return active.contains(this);
+        }
+    }
+
+    private final Timer timer;
+    private final long periodNanos;
+    private final List<Animation> active = new ArrayList<>();
+
+    private long lastFrame;
+    private long frames;
+    private long missedFrames;
+    private long totalFrameNanos;
+    private long maxFrameNanos;
+
+    /**
+     * @param periodMillis time between frames
+     */
+    public AnimationClock(int periodMillis) {
+        this.periodNanos = periodMillis * 1_000_000L;
+        this.timer = new Timer(periodMillis, e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts an animation. Must be called on the event thread.
+     * @param onFinish run once the animation reaches progress 1, after its last frame
+     */
+    public Animation start(long durationMillis, FrameListener listener, Runnable onFinish) {
+        long now = System.nanoTime();
+        Animation animation = new Animation(now, Math.max(1, durationMillis * 1_000_000L), listener, onFinish);
+        active.add(animation);
+        if (!timer.isRunning()) {
+            lastFrame = now;
+            timer.start();
+        }
+        return animation;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        long interval = now - lastFrame;
+        lastFrame = now;
+        frames++;
+        totalFrameNanos += interval;
+        maxFrameNanos = Math.max(maxFrameNanos, interval);
+        if (interval > 2 * periodNanos) missedFrames++;
+        Metrics.FRAME_INTERVAL.record(interval);
+
+        // Finish actions may start new animations; those join this frame at progress 0.
+        for (int i = 0; i < active.size(); ) {
+            Animation animation = active.get(i);
+            float progress = Math.min(1.0f, (float) (now - animation.start) / animation.duration);
+            animation.listener.frame(progress);
+            if (progress >= 1.0f) {
+                active.remove(i);
+                animation.onFinish.run();
+            } else {
+                i++;
+            }
+        }
+        if (active.isEmpty()) timer.stop();
+    }
+
+    public boolean isIdle() { return active.isEmpty(); }
+
+    // Frame statistics since the clock was created or last reset.
+
+    public long getFrames() { return frames; }
+    public long getMissedFrames() { return missedFrames; }
+    public long getMaxFrameNanos() { return maxFrameNanos; }
+
+    public double getMeanFrameMillis() {
+        return frames == 0 ? 0 : totalFrameNanos / 1e6 / frames;
+    }
+
+    public void resetStats() {
+        frames = missedFrames = totalFrameNanos = maxFrameNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames, mean %.1f ms, max %.1f ms, %d missed",
+                frames, getMeanFrameMillis(), maxFrameNanos / 1e6, missedFrames);
+    }
+}
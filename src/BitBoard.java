@@ -0,0 +1,282 @@
+import java.util.Arrays;
+
+/**
+ * A bitboard mirror of an 8x8 board.
+ * Keeps one 64-bit mask per JewelType plus one per power-up, so that match and
+ * move detection come down to a handful of shift-and-AND operations.
+ * Bit (row * 8 + col) of a mask is set when that cell holds a matching jewel.
+ */
+public class BitBoard {
+
+    public static final int SIZE = 8;
+
+    private static final long COL_0 = 0x0101010101010101L;
+    private static final long COL_7 = COL_0 << 7;
+    private static final long NOT_COL_0 = ~COL_0;
+    private static final long NOT_COL_7 = ~COL_7;
+    private static final JewelType[] TYPES = JewelType.values();
+    private static final int FLAME = PowerUpType.FLAME_GEM.ordinal();
+    private static final int CUBE = PowerUpType.HYPER_CUBE.ordinal();
+    // Each cell with its up to eight neighbours: the area a Flame Gem clears.
+    private static final long[] NEIGHBOURHOODS = new long[SIZE * SIZE];
+
+    static {
+        for (int cell = 0; cell < NEIGHBOURHOODS.length; cell++) {
+            long row = 1L << cell;
+            row |= east(row) | west(row);
+            NEIGHBOURHOODS[cell] = row | north(row) | south(row);
+        }
+    }
+
+    private final long[] typeMasks = new long[TYPES.length];
+    private long flameMask;
+    private long cubeMask;
+
+    public static int index(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    public static long bit(int row, int col) {
+        return 1L << index(row, col);
+    }
+
+    /**
+     * @return the cell and its neighbours, diagonals included.
+     */
+    public static long neighbourhood(int cell) {
+        return NEIGHBOURHOODS[cell];
+    }
+
+    /**
+     * Expands a set of rows (bit r set for row r) into a mask of their cells.
+     */
+    public static long rowsMask(int rows) {
+        long mask = 0L;
+        for (int r = 0; r < SIZE; r++) {
+            if ((rows & (1 << r)) != 0) mask |= 0xFFL << (r * SIZE);
+        }
+        return mask;
+    }
+
+    /**
+     * Expands a set of columns (bit c set for column c) into a mask of their cells.
+     */
+    public static long columnsMask(int cols) {
+        return (cols & 0xFFL) * COL_0;
+    }
+
+    /**
+     * @return the right-swap indices (bit i = swap i with i + 1) touching any given cell.
+     */
+    public static long withRightNeighbour(long cells) {
+        return (cells | west(cells)) & NOT_COL_7;
+    }
+
+    /**
+     * @return the down-swap indices (bit i = swap i with i + 8) touching any given cell.
+     */
+    public static long withLowerNeighbour(long cells) {
+        return (cells | north(cells)) & ~(0xFFL << (SIZE * (SIZE - 1)));
+    }
+
+    public void clear() {
+        Arrays.fill(typeMasks, 0L);
+        flameMask = 0L;
+        cubeMask = 0L;
+    }
+
+    public void copyFrom(BitBoard other) {
+        System.arraycopy(other.typeMasks, 0, typeMasks, 0, typeMasks.length);
+        flameMask = other.flameMask;
+        cubeMask = other.cubeMask;
+    }
+
+    /**
+     * Records the jewel at the given cell, replacing whatever was there before.
+     * A null jewel leaves the cell empty.
+     */
+    public void set(int row, int col, Jewel jewel) {
+        long b = bit(row, col);
+        long clear = ~b;
+        for (int t = 0; t < typeMasks.length; t++) {
+            typeMasks[t] &= clear;
+        }
+        flameMask &= clear;
+        cubeMask &= clear;
+        if (jewel == null) return;
+
+        typeMasks[jewel.getType().ordinal()] |= b;
+        if (jewel.getPowerUp() == PowerUpType.FLAME_GEM) {
+            flameMask |= b;
+        } else if (jewel.getPowerUp() == PowerUpType.HYPER_CUBE) {
+            cubeMask |= b;
+        }
+    }
+
+    /**
+     * Re-reads one column from a board's jewel codes, indexed row * SIZE + col,
+     * after the board rewrote the column in place.
+     */
+    public void loadColumn(int col, byte[] codes) {
+        long keep = ~(COL_0 << col);
+        for (int t = 0; t < typeMasks.length; t++) {
+            typeMasks[t] &= keep;
+        }
+        flameMask &= keep;
+        cubeMask &= keep;
+        for (int row = 0; row < SIZE; row++) {
+            int code = codes[index(row, col)];
+            if (code == Jewel.EMPTY_CODE) continue;
+            long b = bit(row, col);
+            typeMasks[Jewel.typeOrdinalOf(code)] |= b;
+            int powerUp = Jewel.powerUpOrdinalOf(code);
+            if (powerUp == FLAME) {
+                flameMask |= b;
+            } else if (powerUp == CUBE) {
+                cubeMask |= b;
+            }
+        }
+    }
+
+    public long getTypeMask(JewelType type) {
+        return typeMasks[type.ordinal()];
+    }
+
+    public long getPowerUpMask(PowerUpType powerUp) {
+        switch (powerUp) {
+            case FLAME_GEM: return flameMask;
+            case HYPER_CUBE: return cubeMask;
+            default: return getOccupiedMask() & ~(flameMask | cubeMask);
+        }
+    }
+
+    public long getOccupiedMask() {
+        long occupied = 0L;
+        for (long m : typeMasks) occupied |= m;
+        return occupied;
+    }
+
+    /**
+     * @return every cell that is part of a horizontal line of three or more.
+     */
+    public long findHorizontalMatches() {
+        return findHorizontalMatches(-1L);
+    }
+
+    /**
+     * Horizontal matches restricted to the given rows. A row's horizontal
+     * lines depend only on that row, so the result is exact for those rows.
+     */
+    public long findHorizontalMatches(long rowsRegion) {
+        long matches = 0L;
+        for (long m : typeMasks) matches |= horizontalMatches(m & rowsRegion);
+        return matches;
+    }
+
+    /**
+     * @return every cell that is part of a vertical line of three or more.
+     */
+    public long findVerticalMatches() {
+        return findVerticalMatches(-1L);
+    }
+
+    /**
+     * Vertical matches restricted to the given columns, exact for those columns.
+     */
+    public long findVerticalMatches(long columnsRegion) {
+        long matches = 0L;
+        for (long m : typeMasks) matches |= verticalMatches(m & columnsRegion);
+        return matches;
+    }
+
+    public long findMatchMask() {
+        long matches = 0L;
+        for (long m : typeMasks) matches |= horizontalMatches(m) | verticalMatches(m);
+        return matches;
+    }
+
+    /**
+     * Returns true if some adjacent swap would create a match.
+     * A board that already contains a match always counts as having a move.
+     */
+    public boolean hasValidMoves() {
+        if (findMatchMask() != 0L) return true;
+        for (long m : typeMasks) {
+            if ((legalSwapsRight(m) | legalSwapsDown(m)) != 0L) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Bit i is set when swapping cell i with its right-hand neighbour would
+     * complete a line. Only valid on a board without existing matches.
+     */
+    public long findLegalSwapsRight() {
+        long legal = 0L;
+        for (long m : typeMasks) legal |= legalSwapsRight(m);
+        return legal;
+    }
+
+    /**
+     * Bit i is set when swapping cell i with the cell below it would complete
+     * a line. Only valid on a board without existing matches.
+     */
+    public long findLegalSwapsDown() {
+        long legal = 0L;
+        for (long m : typeMasks) legal |= legalSwapsDown(m);
+        return legal;
+    }
+
+    // --- Mask arithmetic for a single color ---
+
+    private static long east(long m) { return (m << 1) & NOT_COL_0; }
+    private static long west(long m) { return (m >>> 1) & NOT_COL_7; }
+    private static long south(long m) { return m << SIZE; }
+    private static long north(long m) { return m >>> SIZE; }
+
+    private static long horizontalMatches(long m) {
+        long starts = m & west(m) & west(west(m));
+        return starts | east(starts) | east(east(starts));
+    }
+
+    private static long verticalMatches(long m) {
+        long starts = m & north(m) & north(north(m));
+        return starts | south(starts) | south(south(starts));
+    }
+
+    // A swap is legal when it moves a jewel of this color into an empty-of-color
+    // cell p whose neighbours already form the other two thirds of a line. The
+    // jewel must come from a neighbour of p that is not itself part of that line.
+
+    private static long legalSwapsRight(long m) {
+        long free = ~m;
+        long e = east(m), w = west(m);
+        long lineFromRight = w & west(w) & free;
+        long lineFromLeft = e & east(e) & free;
+        long vertical = verticalTargets(m) & free;
+        long fromWest = (lineFromRight | vertical) & e;
+        long fromEast = (lineFromLeft | vertical) & w;
+        return (fromWest >>> 1) | fromEast;
+    }
+
+    private static long legalSwapsDown(long m) {
+        long free = ~m;
+        long n = north(m), s = south(m);
+        long lineFromBelow = n & north(n) & free;
+        long lineFromAbove = s & south(s) & free;
+        long horizontal = horizontalTargets(m) & free;
+        long fromNorth = (lineFromBelow | horizontal) & s;
+        long fromSouth = (lineFromAbove | horizontal) & n;
+        return (fromNorth >>> SIZE) | fromSouth;
+    }
+
+    private static long horizontalTargets(long m) {
+        long e = east(m), w = west(m);
+        return (w & west(w)) | (e & east(e)) | (e & w);
+    }
+
+    private static long verticalTargets(long m) {
+        long n = north(m), s = south(m);
+        return (n & north(n)) | (s & south(s)) | (n & s);
+    }
+}
@@ -1,234 +1,1458 @@
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Board.java (Explosion Update)
  * Manages the grid of jewels and all core game logic.
  * from matches of 4 and 5, respectively.
+ * The Jewel grid is mirrored by a BitBoard so match and move detection run on masks.
+ *
+ * Cells are addressed either by row/column (Point-based methods, used by the GUI)
+ * or by a packed index, row * size + col. The packed methods work on reusable
+ * CellSets and int arrays and allocate nothing; the Point methods are thin
+ * adapters over them.
+ *
+ * The game board is 8x8, which fits the BitBoard masks. Larger boards (up to
+ * MAX_SIZE per side, for stress tests) scan the grid instead, and split match
+ * detection, collapse and refill into strips of rows, columns or bitset words
+ * that run on a fork/join pool. Work below PARALLEL_CUTOFF cells stays on the
+ * calling thread.
  */
 public class Board {
 
-    private static final int GRID_SIZE = 8;
-    private Jewel[][] grid;
-    private Random random = new Random();
-    private Set<Point> lastMatches = new HashSet<>();
-    private List<List<Point>> lastMatchLines = new ArrayList<>();
+    public static final int DEFAULT_SIZE = BitBoard.SIZE;
+    public static final int MIN_SIZE = 4;
+    public static final int MAX_SIZE = 4096;
+    // Cells handled by one fork/join task; smaller boards are not split at all.
+    public static final int PARALLEL_CUTOFF = 1 << 14;
+    // Arrangements tried by shuffle before it gives up on a board.
+    public static final int MAX_SHUFFLE_ATTEMPTS = 8;
+    private static final JewelType[] TYPES = JewelType.values();
+    private static final int NO_CELL = -1;
+    private static final MatchShape[] SHAPES = MatchShape.values();
+    private static final PowerUpType[] POWER_UPS = PowerUpType.values();
+    private static final int PLAIN = PowerUpType.NONE.ordinal();
+    private static final int FLAME = PowerUpType.FLAME_GEM.ordinal();
+    private static final int CUBE = PowerUpType.HYPER_CUBE.ordinal();
+
+    private final int size;
+    private final int cellCount;
+    // One byte per cell holding the jewel's flyweight code (Jewel.EMPTY_CODE if empty).
+    private final byte[] cells;
+    // Only DEFAULT_SIZE boards have a bitboard and a move index; others are scanned.
+    private final BitBoard masks;
+    private final MoveIndex moveIndex;
+    private final GameRandom random;
+    private final ForkJoinPool pool;
+    // Zobrist hash of the cells, kept in step by setJewel.
+    private long hash;
+
+    // The matches found by the last findMatches call, as cells and as lines.
+    // Lines are stored as (first cell, length), horizontal lines first.
+    private final CellSet matchCells;
+    private int[] lineStart = new int[2 * DEFAULT_SIZE * DEFAULT_SIZE / 3];
+    private int[] lineLength = new int[2 * DEFAULT_SIZE * DEFAULT_SIZE / 3];
+    private int lineCount;
+    // Lines from here on are vertical; both halves are sorted by start cell.
+    private int firstVerticalLine;
+    // The last findMatches's lines joined into groups where they cross, and
+    // each group's shape, size, color, power-up and the cell it goes in.
+    private int[] lineGroup = new int[lineStart.length];
+    private boolean grouped;
+    private int groupCount;
+    private int[] groupShape = new int[lineStart.length];
+    private int[] groupSize = new int[lineStart.length];
+    private int[] groupType = new int[lineStart.length];
+    private int[] groupPowerUp = new int[lineStart.length];
+    private int[] groupPowerUpCell = new int[lineStart.length];
+    // The two cells of the swap that set off the pending match, or NO_CELL.
+    private int swapCell1 = NO_CELL;
+    private int swapCell2 = NO_CELL;
+    private final CellSet toClear;
+    // Flame Gems set off by the last blast resolution, chain reactions included.
+    private final CellSet detonated;
+    // Scanning boards only: power-ups hit but not yet set off, and a color's cells.
+    private int[] blastQueue;
+    private CellSet colorCells;
+    // Reused by collapse and refill when the board is too small to split.
+    private final Strip wholeBoard;
+    // Columns that may have empty cells; collapse and refill skip the rest.
+    private final CellSet holeColumns;
+    // Once collapsed, a hole column's empty cells are its top columnHoles rows.
+    private final int[] columnHoles;
+    private boolean collapsed;
+
+    // Rows and columns changed since the cached match masks were last refreshed.
+    // A row's horizontal lines (and a column's vertical lines) depend only on that
+    // row (column), so only these need to be re-examined. Bitboard boards only.
+    private static final int ALL_LINES = (1 << DEFAULT_SIZE) - 1;
+    private int dirtyRows = ALL_LINES;
+    private int dirtyCols = ALL_LINES;
+    private long horizontalMatches;
+    private long verticalMatches;
+    // Set by a Hyper Cube swap: the next findMatches reports the color clear.
+    private boolean hyperCubePending;
+    // Power-ups created over the board's life, by PowerUpType ordinal; statistics only.
+    private final int[] powerUpsCreated = new int[PowerUpType.values().length];
+    // Match groups cleared over the board's life, by MatchShape ordinal; statistics only.
+    private final int[] shapesCleared = new int[SHAPES.length];
+    private int shuffles;
 
     public Board() {
-        grid = new Jewel[GRID_SIZE][GRID_SIZE];
+        this(new GameRandom(GameRandom.randomSeed()));
+    }
+
+    /**
+     * @param random the game's random stream; board generation and refills
+     *               draw only from it, so the same stream replays the same game.
+     */
+    public Board(GameRandom random) {
+        this(DEFAULT_SIZE, random);
+    }
+
+    public Board(int size, GameRandom random) {
+        this(size, random, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param size cells per side, MIN_SIZE to MAX_SIZE
+     * @param pool runs the strips of boards larger than PARALLEL_CUTOFF cells
+     */
+    public Board(int size, GameRandom random, ForkJoinPool pool) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between " + MIN_SIZE + " and " + MAX_SIZE + ": " + size);
+        }
+        this.size = size;
+        this.cellCount = size * size;
+        this.cells = new byte[cellCount];
+        this.masks = size == DEFAULT_SIZE ? new BitBoard() : null;
+        this.moveIndex = size == DEFAULT_SIZE ? new MoveIndex() : null;
+        this.random = random;
+        this.pool = pool;
+        this.matchCells = new CellSet(cellCount);
+        this.toClear = new CellSet(cellCount);
+        this.detonated = new CellSet(cellCount);
+        this.wholeBoard = new Strip(0, size, null);
+        this.holeColumns = new CellSet(size);
+        this.columnHoles = new int[size];
     }
 
+    /**
+     * Fills the board in a single pass. A move is planted first, then every other
+     * cell gets a random color among those that don't complete a line with the
+     * jewels already placed around it, so the board starts with no matches and at
+     * least one legal swap.
+     */
     public void populateBoard() {
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE; c++) {
-                grid[r][c] = new Jewel(JewelType.getRandom());
+        long start = System.nanoTime();
+        GameEvents.BoardGenerationEvent event = new GameEvents.BoardGenerationEvent();
+        event.begin();
+        clear();
+        plantMove();
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (cells[cell] == Jewel.EMPTY_CODE) {
+                setJewel(cell, Jewel.of(randomTypeWithoutMatchAt(rowOf(cell), colOf(cell))));
             }
         }
-        while (!hasValidMoves() || !findAllMatches().isEmpty()) {
-             for (int r = 0; r < GRID_SIZE; r++) {
-                for (int c = 0; c < GRID_SIZE; c++) {
-                    grid[r][c] = new Jewel(JewelType.getRandom());
-                }
+        holeColumns.clear();
+        event.end();
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.attempts = 1;
+            event.commit();
+        }
+        Metrics.BOARD_GENERATION.recordSince(start);
+    }
+
+    /**
+     * Rearranges the jewels on the board, power-ups and all, so that nothing
+     * matches and at least one swap is legal: for a board with no move left.
+     * Built like populateBoard, in one pass per attempt: a move is planted from
+     * a color with three jewels to spare, then each cell takes a jewel from the
+     * rest, drawn at random among the colors that complete no line there.
+     * An attempt only fails if the jewels left run out of such colors, which
+     * takes a board crowded with few colors; each new attempt draws afresh.
+     * The draws come from the game's stream, so replays shuffle alike.
+     * @return false if no arrangement was found in MAX_SHUFFLE_ATTEMPTS
+     * attempts, leaving the board as it was.
+     */
+    public boolean shuffle() {
+        long start = System.nanoTime();
+        byte[] original = Arrays.copyOf(cells, cellCount);
+        int[] counts = new int[Jewel.CODE_COUNT];
+        for (int attempt = 0; attempt < MAX_SHUFFLE_ATTEMPTS; attempt++) {
+            Arrays.fill(counts, 0);
+            for (byte code : original) counts[code]++;
+            counts[Jewel.EMPTY_CODE] = 0;
+            clear();
+            if (arrangeJewels(counts)) {
+                matchCells.clear();
+                lineCount = 0;
+                grouped = false;
+                holeColumns.clear();
+                shuffles++;
+                Metrics.BOARD_SHUFFLE.recordSince(start);
+                return true;
             }
         }
+        loadCodes(original);
+        Metrics.BOARD_SHUFFLE.recordSince(start);
+        return false;
     }
 
+    /**
+     * One shuffle attempt on the cleared board, placing jewels taken from counts.
+     */
+    private boolean arrangeJewels(int[] counts) {
+        int spare = 0;
+        for (int type = 0; type < TYPES.length; type++) {
+            if (jewelsOfType(counts, type) >= 3) spare |= 1 << type;
+        }
+        if (spare == 0) return false;
+        // The pattern X X _ X along a random row or column, as in plantMove
+        int along = random.nextInt(size - 3);
+        int across = random.nextInt(size);
+        boolean horizontal = random.nextBoolean();
+        int sample = takeJewel(counts, spare);
+        counts[sample]++; // Only wanted its color
+        int type = Jewel.typeOrdinalOf(sample);
+        for (int offset = 0; offset <= 3; offset++) {
+            if (offset == 2) continue;
+            int cell = horizontal ? cellOf(across, along + offset) : cellOf(along + offset, across);
+            setJewel(cell, Jewel.fromCode(takeJewel(counts, 1 << type)));
+        }
+        int allTypes = (1 << TYPES.length) - 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (cells[cell] != Jewel.EMPTY_CODE) continue;
+            int r = rowOf(cell);
+            int c = colOf(cell);
+            int allowed = allTypes & ~(excludedTypes(r, c, 0, 1) | excludedTypes(r, c, 1, 0));
+            int code = takeJewel(counts, allowed);
+            if (code == Jewel.EMPTY_CODE) return false;
+            setJewel(cell, Jewel.fromCode(code));
+        }
+        return true;
+    }
+
+    private static int jewelsOfType(int[] counts, int type) {
+        int jewels = 0;
+        for (int powerUp = 0; powerUp < POWER_UPS.length; powerUp++) {
+            jewels += counts[Jewel.codeOf(TYPES[type], POWER_UPS[powerUp])];
+        }
+        return jewels;
+    }
+
+    /**
+     * Takes one jewel, uniformly among those left whose color is in the set.
+     * @return its code, or Jewel.EMPTY_CODE if none is left
+     */
+    private int takeJewel(int[] counts, int types) {
+        int available = 0;
+        for (int code = 1; code < counts.length; code++) {
+            if ((types & (1 << Jewel.typeOrdinalOf(code))) != 0) available += counts[code];
+        }
+        if (available == 0) return Jewel.EMPTY_CODE;
+        int choice = random.nextInt(available);
+        for (int code = 1; ; code++) {
+            if ((types & (1 << Jewel.typeOrdinalOf(code))) == 0) continue;
+            choice -= counts[code];
+            if (choice < 0) {
+                counts[code]--;
+                return code;
+            }
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(cells, (byte) Jewel.EMPTY_CODE);
+        if (masks != null) {
+            masks.clear();
+            moveIndex.invalidate();
+        }
+        hash = 0L;
+        dirtyRows = ALL_LINES;
+        dirtyCols = ALL_LINES;
+        for (int col = 0; col < size; col++) holeColumns.add(col);
+        collapsed = false;
+    }
+
+    /**
+     * Places the pattern X X _ X along a random row or column; swapping the gap
+     * with the last X always completes a line.
+     */
+    private void plantMove() {
+        JewelType type = TYPES[random.nextInt(TYPES.length)];
+        int along = random.nextInt(size - 3);
+        int across = random.nextInt(size);
+        boolean horizontal = random.nextBoolean();
+        for (int offset = 0; offset <= 3; offset++) {
+            if (offset == 2) continue;
+            if (horizontal) {
+                setJewel(across, along + offset, Jewel.of(type));
+            } else {
+                setJewel(along + offset, across, Jewel.of(type));
+            }
+        }
+    }
+
+    /**
+     * Picks uniformly among the colors that would not form a line of three with
+     * the jewels already placed. At most three colors are ruled out per
+     * direction, so with seven colors there is always a choice.
+     */
+    private JewelType randomTypeWithoutMatchAt(int r, int c) {
+        int excluded = excludedTypes(r, c, 0, 1) | excludedTypes(r, c, 1, 0);
+        int choice = random.nextInt(TYPES.length - Integer.bitCount(excluded));
+        for (JewelType type : TYPES) {
+            if ((excluded & (1 << type.ordinal())) == 0 && choice-- == 0) {
+                return type;
+            }
+        }
+        throw new IllegalStateException("No color available at " + r + "," + c);
+    }
+
+    /**
+     * @return a bit set of the color ordinals that would complete a line through
+     * (r, c) along the given direction.
+     */
+    private int excludedTypes(int r, int c, int dr, int dc) {
+        int before1 = typeBit(r - dr, c - dc);
+        int before2 = typeBit(r - 2 * dr, c - 2 * dc);
+        int after1 = typeBit(r + dr, c + dc);
+        int after2 = typeBit(r + 2 * dr, c + 2 * dc);
+        return (before1 & before2) | (after1 & after2) | (before1 & after1);
+    }
+
+    private int typeBit(int r, int c) {
+        int type = typeAt(r, c);
+        return type < 0 ? 0 : 1 << type;
+    }
+
+    /**
+     * Makes this board an exact copy of another board's position, including a
+     * pending match or Hyper Cube clear. The random stream is not copied.
+     * Only reads the other board, so several threads may copy the same board
+     * as long as nobody changes it meanwhile.
+     */
+    public void copyFrom(Board other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Cannot copy a board of size " + other.size + " into one of size " + size);
+        }
+        System.arraycopy(other.cells, 0, cells, 0, cellCount);
+        if (masks != null) {
+            masks.copyFrom(other.masks);
+            moveIndex.invalidate();
+        }
+        hash = other.hash;
+        matchCells.copyFrom(other.matchCells);
+        lineCount = 0;
+        for (int i = 0; i < other.lineCount; i++) addLine(other.lineStart[i], other.lineLength[i]);
+        firstVerticalLine = other.firstVerticalLine;
+        swapCell1 = other.swapCell1;
+        swapCell2 = other.swapCell2;
+        grouped = false;
+        dirtyRows = other.dirtyRows;
+        dirtyCols = other.dirtyCols;
+        horizontalMatches = other.horizontalMatches;
+        verticalMatches = other.verticalMatches;
+        hyperCubePending = other.hyperCubePending;
+        holeColumns.copyFrom(other.holeColumns);
+        System.arraycopy(other.columnHoles, 0, columnHoles, 0, size);
+        collapsed = other.collapsed;
+    }
+
+    /**
+     * Copies every cell's jewel code (Jewel.EMPTY_CODE if empty), row by row,
+     * into an array of at least getCellCount() bytes.
+     */
+    public void copyCodes(byte[] codes) {
+        System.arraycopy(cells, 0, codes, 0, cellCount);
+    }
+
+    /**
+     * Replaces every cell with the given jewel codes, row by row, as written by
+     * copyCodes. The board is taken to be settled: no match or Hyper Cube clear
+     * is pending.
+     */
+    public void loadCodes(byte[] codes) {
+        clear();
+        matchCells.clear();
+        lineCount = 0;
+        grouped = false;
+        swapCell1 = NO_CELL;
+        swapCell2 = NO_CELL;
+        hyperCubePending = false;
+        holeColumns.clear();
+        for (int cell = 0; cell < cellCount; cell++) {
+            int code = codes[cell];
+            if (code < Jewel.EMPTY_CODE || code >= Jewel.CODE_COUNT) {
+                throw new IllegalArgumentException("Bad jewel code " + code + " at cell " + cell);
+            }
+            if (code != Jewel.EMPTY_CODE) {
+                setJewel(cell, Jewel.fromCode(code));
+            } else {
+                holeColumns.add(colOf(cell));
+            }
+        }
+    }
+
+    /**
+     * Answered from the move index; a board that still has a match counts as
+     * having a move.
+     */
     public boolean hasValidMoves() {
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE; c++) {
-                if (c < GRID_SIZE - 1 && wouldSwapCreateMatch(new Point(r,c), new Point(r, c+1))) return true;
-                if (r < GRID_SIZE - 1 && wouldSwapCreateMatch(new Point(r,c), new Point(r+1, c))) return true;
+        GameEvents.MoveCheckEvent event = new GameEvents.MoveCheckEvent();
+        event.begin();
+        boolean hasMoves = findValidMove();
+        event.end();
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.hasMoves = hasMoves;
+            event.commit();
+        }
+        return hasMoves;
+    }
+
+    private boolean findValidMove() {
+        if (masks == null) {
+            boolean found = false;
+            for (Strip strip : forStrips(size, size, this::findMoveOrMatch)) found |= strip.found;
+            return found;
+        }
+        moveIndex.refresh(masks);
+        return moveIndex.hasMoves() || refreshMatchMasks() != 0L;
+    }
+
+    /**
+     * @return every swap checkAndPerformSwap would accept on the current board.
+     */
+    public List<Move> getLegalMoves() {
+        if (masks == null) {
+            List<Move> moves = new ArrayList<>();
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (colOf(cell) + 1 < size && isLegalSwap(cell, cell + 1)) {
+                    moves.add(new Move(toPoint(cell), toPoint(cell + 1)));
+                }
+                if (rowOf(cell) + 1 < size && isLegalSwap(cell, cell + size)) {
+                    moves.add(new Move(toPoint(cell), toPoint(cell + size)));
+                }
             }
+            return moves;
         }
-        return false;
+        moveIndex.refresh(masks);
+        return moveIndex.getMoves();
     }
 
-    private boolean wouldSwapCreateMatch(Point p1, Point p2) {
-        swapJewels(p1, p2);
-        boolean hasMatch = !findAllMatches().isEmpty();
-        swapJewels(p1, p2);
-        return hasMatch;
+    /**
+     * @throws IllegalStateException on boards other than DEFAULT_SIZE, which
+     * have no bitboard to index.
+     */
+    public MoveIndex getMoveIndex() {
+        if (masks == null) {
+            throw new IllegalStateException("Only " + DEFAULT_SIZE + "x" + DEFAULT_SIZE + " boards have a move index");
+        }
+        moveIndex.refresh(masks);
+        return moveIndex;
     }
 
     public boolean checkAndPerformSwap(Point p1, Point p2) {
-        Jewel j1 = getJewel(p1.x, p1.y);
-        Jewel j2 = getJewel(p2.x, p2.y);
+        return checkAndPerformSwap(cellOf(p1.x, p1.y), cellOf(p2.x, p2.y));
+    }
+
+    /**
+     * Swaps two adjacent cells if that creates a match (or triggers a Hyper
+     * Cube), and undoes the swap otherwise.
+     * @return true if the swap was kept.
+     */
+    public boolean checkAndPerformSwap(int cell1, int cell2) {
+        Jewel j1 = getJewel(cell1);
+        Jewel j2 = getJewel(cell2);
 
         if (j1.getPowerUp() == PowerUpType.HYPER_CUBE) {
-            activateHyperCube(j1, j2.getType());
+            activateHyperCube(cell1, j2.getType());
             return true;
         }
         if (j2.getPowerUp() == PowerUpType.HYPER_CUBE) {
-            activateHyperCube(j2, j1.getType());
+            activateHyperCube(cell2, j1.getType());
             return true;
         }
-        
-        swapJewels(p1, p2);
-        if (!findAllMatches().isEmpty()) {
+
+        swapJewels(cell1, cell2);
+        boolean matched = masks != null ? refreshMatchMasks() != 0L : isMatched(cell1) || isMatched(cell2);
+        if (matched) {
+            swapCell1 = cell1;
+            swapCell2 = cell2;
             return true;
         } else {
-            swapJewels(p1, p2);
+            swapJewels(cell1, cell2);
             return false;
         }
     }
 
-    private void activateHyperCube(Jewel hyperCube, JewelType typeToClear) {
-        hyperCube.setPowerUp(PowerUpType.NONE);
-        Set<Point> toClear = new HashSet<>();
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE; c++) {
-                if (getJewel(r, c) != null && getJewel(r, c).getType() == typeToClear) {
-                    toClear.add(new Point(r,c));
-                }
-            }
+    private void activateHyperCube(int cubeCell, JewelType typeToClear) {
+        setJewel(cubeCell, getJewel(cubeCell).withPowerUp(PowerUpType.NONE));
+        lineCount = 0;
+        grouped = false;
+        swapCell1 = NO_CELL;
+        swapCell2 = NO_CELL;
+        if (masks != null) {
+            matchCells.setWord(0, masks.getTypeMask(typeToClear));
+        } else {
+            int type = typeToClear.ordinal();
+            forStrips(wordCount(), 64, strip -> markType(strip, type, matchCells));
         }
-        lastMatches = toClear;
+        hyperCubePending = true;
     }
 
     public Set<Point> findAllMatches() {
-        lastMatches.clear();
-        lastMatchLines.clear();
-        Set<Point> matches = new HashSet<>();
+        return toPoints(findMatches());
+    }
+
+    /**
+     * Finds every cell that is part of a line of three or more, and remembers
+     * the lines, joined into match groups, for clearAndCreatePowerUps. After a
+     * Hyper Cube swap this reports the cube's color clear instead, with no groups.
+     * @return the board's own match set, overwritten by the next call.
+     */
+    public CellSet findMatches() {
+        GameEvents.MatchScanEvent event = new GameEvents.MatchScanEvent();
+        event.begin();
+        CellSet matches = scanMatches();
+        event.end();
+        if (event.shouldCommit()) {
+            event.size = size;
+            event.matched = matches.size();
+            event.commit();
+        }
+        return matches;
+    }
+
+    private CellSet scanMatches() {
+        if (hyperCubePending) {
+            hyperCubePending = false;
+            return matchCells;
+        }
+        lineCount = 0;
+        firstVerticalLine = 0;
+        grouped = false;
+        if (masks == null) {
+            return findMatchesByStrips();
+        }
+        long matched = refreshMatchMasks();
+        matchCells.setWord(0, matched);
+        if (matched == 0L) {
+            return matchCells;
+        }
         // Horizontal
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE - 2; ) {
-                List<Point> line = findLine(r, c, 0, 1);
-                if (line.size() >= 3) {
-                    matches.addAll(line);
-                    lastMatchLines.add(line);
-                }
-                c += line.isEmpty() ? 1 : line.size();
+        long horizontal = horizontalMatches;
+        for (int r = 0; r < size; r++) {
+            if ((horizontal & BitBoard.rowsMask(1 << r)) == 0L) continue;
+            for (int c = 0; c < size - 2; ) {
+                int length = findLine(horizontal, cellOf(r, c), 1, size - c);
+                c += length == 0 ? 1 : length;
             }
         }
+        firstVerticalLine = lineCount;
         // Vertical
-        for (int c = 0; c < GRID_SIZE; c++) {
-            for (int r = 0; r < GRID_SIZE - 2; ) {
-                List<Point> line = findLine(r, c, 1, 0);
-                if (line.size() >= 3) {
-                    matches.addAll(line);
-                    lastMatchLines.add(line);
-                }
-                r += line.isEmpty() ? 1 : line.size();
+        long vertical = verticalMatches;
+        for (int c = 0; c < size; c++) {
+            if ((vertical & BitBoard.columnsMask(1 << c)) == 0L) continue;
+            for (int r = 0; r < size - 2; ) {
+                int length = findLine(vertical, cellOf(r, c), size, size - r);
+                r += length == 0 ? 1 : length;
             }
         }
-        lastMatches = matches;
-        return matches;
+        return matchCells;
     }
-    
-    public Set<Point> getExplosionCenters(Set<Point> matches) {
-        Set<Point> centers = new HashSet<>();
-        for (Point p : matches) {
-            Jewel jewel = getJewel(p.x, p.y);
-            if (jewel != null && jewel.getPowerUp() == PowerUpType.FLAME_GEM) {
-                centers.add(p);
-            }
+
+    /**
+     * The scanning version of findMatches. Matched cells are marked in strips of
+     * bitset words, so no two tasks write the same word; lines are then collected
+     * from row strips and column strips and appended in strip order.
+     */
+    private CellSet findMatchesByStrips() {
+        forStrips(wordCount(), 64, this::markMatches);
+        for (Strip strip : forStrips(size, size, this::findRowLines)) appendLines(strip);
+        firstVerticalLine = lineCount;
+        for (Strip strip : forStrips(size, size, this::findColumnLines)) appendLines(strip);
+        return matchCells;
+    }
+
+    /**
+     * Brings the cached match masks up to date by re-examining only the dirty
+     * rows and columns.
+     * @return every cell currently part of a match.
+     */
+    private long refreshMatchMasks() {
+        if (dirtyRows != 0) {
+            long region = BitBoard.rowsMask(dirtyRows);
+            horizontalMatches = (horizontalMatches & ~region) | masks.findHorizontalMatches(region);
+            dirtyRows = 0;
+        }
+        if (dirtyCols != 0) {
+            long region = BitBoard.columnsMask(dirtyCols);
+            verticalMatches = (verticalMatches & ~region) | masks.findVerticalMatches(region);
+            dirtyCols = 0;
         }
-        return centers;
+        return horizontalMatches | verticalMatches;
     }
 
+    public Set<Point> getExplosionCenters(Set<Point> matches) {
+        CellSet cells = new CellSet(cellCount);
+        for (Point p : matches) cells.add(cellOf(p.x, p.y));
+        CellSet centers = new CellSet(cellCount);
+        findExplosionCenters(cells, centers);
+        return toPoints(centers);
+    }
+
+    /**
+     * Writes into centers the Flame Gems that go off when the given cells are
+     * cleared: those among the cells and those caught in the blasts that follow.
+     */
+    public void findExplosionCenters(CellSet matches, CellSet centers) {
+        toClear.copyFrom(matches);
+        propagateBlasts(toClear);
+        centers.copyFrom(detonated);
+    }
+
+    /**
+     * Clears the matched cells and everything their power-ups blow up, then
+     * creates each match group's power-up: a Hyper Cube for five or more in a
+     * row, a Flame Gem for four in a row or an L, T or cross.
+     * @return the number of jewels cleared.
+     */
     public int clearAndCreatePowerUps() {
-        Set<Point> toClear = new HashSet<>(lastMatches);
-        
-        for (Point p : new HashSet<>(lastMatches)) {
-            Jewel jewel = getJewel(p.x, p.y);
-            if (jewel != null && jewel.getPowerUp() == PowerUpType.FLAME_GEM) {
-                for (int r = p.x - 1; r <= p.x + 1; r++) {
-                    for (int c = p.y - 1; c <= p.y + 1; c++) {
-                        if (getJewel(r, c) != null) toClear.add(new Point(r, c));
-                    }
+        toClear.copyFrom(matchCells);
+        propagateBlasts(toClear);
+
+        groupLines();
+        for (int group = 0; group < groupCount; group++) {
+            shapesCleared[groupShape[group]]++;
+            int powerUp = groupPowerUp[group];
+            if (powerUp == PLAIN) continue;
+            int cell = groupPowerUpCell[group];
+            setJewel(cell, getJewel(cell).withPowerUp(POWER_UPS[powerUp]));
+            toClear.remove(cell); // Don't clear the new power-up
+            powerUpsCreated[powerUp]++;
+        }
+        // The swap only places the power-ups of the cascade's first link
+        swapCell1 = NO_CELL;
+        swapCell2 = NO_CELL;
+
+        int clearedCount = toClear.size();
+        for (int cell = toClear.next(0); cell >= 0; cell = toClear.next(cell + 1)) {
+            setJewel(cell, null);
+        }
+        return clearedCount;
+    }
+
+    /**
+     * Adds to clear the blast of every power-up in it, then of every power-up
+     * those blasts reach, until a pass sets off nothing new. A Flame Gem clears
+     * its 3x3 neighbourhood and a Hyper Cube every jewel of its color. The Flame
+     * Gems set off are left in detonated.
+     *
+     * On the bitboard the pending power-ups are a mask, and each pass is an OR
+     * of precomputed neighbourhood and color masks. Larger boards keep a
+     * worklist of power-ups hit, each color's cells collected at most once.
+     */
+    private void propagateBlasts(CellSet clear) {
+        if (masks != null) {
+            long flames = masks.getPowerUpMask(PowerUpType.FLAME_GEM);
+            long powerUps = flames | masks.getPowerUpMask(PowerUpType.HYPER_CUBE);
+            long cleared = clear.getWord(0);
+            long fired = 0L;
+            for (long pending = cleared & powerUps; pending != 0L; pending = cleared & powerUps & ~fired) {
+                fired |= pending;
+                for (long bits = pending; bits != 0L; bits &= bits - 1) {
+                    int cell = Long.numberOfTrailingZeros(bits);
+                    cleared |= (flames & (1L << cell)) != 0L
+                            ? BitBoard.neighbourhood(cell)
+                            : masks.getTypeMask(TYPES[Jewel.typeOrdinalOf(cells[cell])]);
                 }
             }
+            clear.setWord(0, cleared & masks.getOccupiedMask());
+            detonated.setWord(0, fired & flames);
+            return;
         }
-        
-        // Create new power-ups from the original match lines
-        for (List<Point> line : lastMatchLines) {
-            if (line.size() == 4) {
-                Point p = line.get(0); // Create power-up at the start of the line
-                grid[p.x][p.y] = new Jewel(getJewel(p.x, p.y).getType(), PowerUpType.FLAME_GEM);
-                toClear.remove(p); // Don't clear the new power-up
-            } else if (line.size() >= 5) {
-                Point p = line.get(0);
-                grid[p.x][p.y] = new Jewel(getJewel(p.x, p.y).getType(), PowerUpType.HYPER_CUBE);
-                toClear.remove(p);
-            }
+        detonated.clear();
+        if (blastQueue == null) blastQueue = new int[64];
+        int queued = 0;
+        for (int cell = clear.next(0); cell >= 0; cell = clear.next(cell + 1)) {
+            int code = cells[cell];
+            if (code != Jewel.EMPTY_CODE && Jewel.powerUpOrdinalOf(code) != PLAIN) queued = enqueueBlast(cell, queued);
         }
-        
-        int clearedCount = toClear.size();
-        for (Point p : toClear) {
-            grid[p.x][p.y] = null;
+        int colorsCleared = 0;
+        while (queued > 0) {
+            int cell = blastQueue[--queued];
+            int code = cells[cell];
+            if (Jewel.powerUpOrdinalOf(code) == FLAME) {
+                detonated.add(cell);
+                int row = rowOf(cell);
+                int col = colOf(cell);
+                for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                    for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+                        queued = hit(clear, cellOf(r, c), queued);
+                    }
+                }
+            } else {
+                int type = Jewel.typeOrdinalOf(code);
+                if ((colorsCleared & (1 << type)) != 0) continue;
+                colorsCleared |= 1 << type;
+                if (colorCells == null) colorCells = new CellSet(cellCount);
+                forStrips(wordCount(), 64, strip -> markType(strip, type, colorCells));
+                for (int hit = colorCells.next(0); hit >= 0; hit = colorCells.next(hit + 1)) {
+                    queued = hit(clear, hit, queued);
+                }
+            }
         }
-        return clearedCount;
     }
-    
+
+    /**
+     * Adds a cell caught in a blast to clear, queueing it if it is a power-up
+     * not already cleared.
+     */
+    private int hit(CellSet clear, int cell, int queued) {
+        int code = cells[cell];
+        if (code == Jewel.EMPTY_CODE || clear.contains(cell)) return queued;
+        clear.add(cell);
+        return Jewel.powerUpOrdinalOf(code) != PLAIN ? enqueueBlast(cell, queued) : queued;
+    }
+
+    private int enqueueBlast(int cell, int queued) {
+        if (queued == blastQueue.length) blastQueue = Arrays.copyOf(blastQueue, queued * 2);
+        blastQueue[queued] = cell;
+        return queued + 1;
+    }
+
+    /**
+     * @return a map from each moved jewel's new position to its old position.
+     */
     public Map<Point, Point> collapseGrid() {
+        int[] fallFrom = new int[cellCount];
+        int[] fallTo = new int[cellCount];
+        int falls = collapseGrid(fallFrom, fallTo);
         Map<Point, Point> fallMap = new HashMap<>();
-        for (int col = 0; col < GRID_SIZE; col++) {
-            int emptyRow = GRID_SIZE - 1;
-            for (int row = GRID_SIZE - 1; row >= 0; row--) {
-                if (grid[row][col] != null) {
-                    Point startPos = new Point(row, col);
-                    Point finalPos = new Point(emptyRow, col);
-                    if (!startPos.equals(finalPos)) {
-                        fallMap.put(finalPos, startPos);
-                        swapJewels(startPos, finalPos);
+        for (int i = 0; i < falls; i++) {
+            fallMap.put(toPoint(fallTo[i]), toPoint(fallFrom[i]));
+        }
+        return fallMap;
+    }
+
+    /**
+     * Drops every jewel to the lowest empty cell of its column. Each column
+     * something was cleared from is compacted in one bottom-up pass, leaving
+     * its holes at the top for refillGrid; the other columns are not looked at.
+     * Each move is recorded as fallFrom[i] to fallTo[i], column by column; both
+     * arrays need room for a full board.
+     * @return the number of jewels that moved.
+     */
+    public int collapseGrid(int[] fallFrom, int[] fallTo) {
+        int falls = 0;
+        if (cellCount <= PARALLEL_CUTOFF) {
+            wholeBoard.reset();
+            collapseColumns(wholeBoard, fallFrom, fallTo);
+            hash ^= wholeBoard.hash;
+            falls = wholeBoard.count;
+        } else {
+            // A strip of columns [from, to) records at most (to - from) * size falls,
+            // so each strip fills its own region of the arrays; they are packed after.
+            Strip[] strips = forStrips(size, size, strip -> collapseColumns(strip, fallFrom, fallTo));
+            for (Strip strip : strips) {
+                if (fallFrom != null) {
+                    System.arraycopy(fallFrom, strip.from * size, fallFrom, falls, strip.count);
+                    System.arraycopy(fallTo, strip.from * size, fallTo, falls, strip.count);
+                }
+                falls += strip.count;
+                hash ^= strip.hash;
+            }
+        }
+        for (int col = holeColumns.next(0); col >= 0; col = holeColumns.next(col + 1)) {
+            if (columnHoles[col] == 0) holeColumns.remove(col);
+        }
+        collapsed = true;
+        return falls;
+    }
+
+    /**
+     * @param fallFrom null to move the jewels without recording their falls
+     */
+    private void collapseColumns(Strip strip, int[] fallFrom, int[] fallTo) {
+        int falls = strip.from * size;
+        for (int col = holeColumns.next(strip.from); col >= 0 && col < strip.to; col = holeColumns.next(col + 1)) {
+            int emptyRow = size - 1;
+            int lowestHole = -1;
+            for (int row = size - 1; row >= 0; row--) {
+                int start = cellOf(row, col);
+                int code = cells[start];
+                if (code == Jewel.EMPTY_CODE) {
+                    if (lowestHole < 0) lowestHole = row;
+                    continue;
+                }
+                if (row != emptyRow) {
+                    int end = cellOf(emptyRow, col);
+                    if (fallFrom != null) {
+                        fallFrom[falls] = start;
+                        fallTo[falls] = end;
                     }
-                    emptyRow--;
+                    falls++;
+                    write(strip, end, code);
                 }
+                emptyRow--;
+            }
+            // The jewels that fell out of the top rows left copies behind
+            for (int row = emptyRow; row >= 0; row--) {
+                int cell = cellOf(row, col);
+                if (cells[cell] != Jewel.EMPTY_CODE) write(strip, cell, Jewel.EMPTY_CODE);
             }
+            columnHoles[col] = emptyRow + 1;
+            if (masks != null && lowestHole >= 0) reloadColumn(col, lowestHole);
         }
-        return fallMap;
+        strip.count = falls - strip.from * size;
+    }
+
+    /**
+     * Describes the refill that follows collapseGrid: new jewel i drops from
+     * fromRow[i], above the board, to cell to[i]. Column by column, and only
+     * for the columns the collapse left holes in; both arrays need room for a
+     * full board.
+     * @return the number of jewels refillGrid will drop in.
+     */
+    public int getSpawns(int[] fromRow, int[] to) {
+        if (!collapsed) throw new IllegalStateException("The board has cleared cells that have not collapsed");
+        int spawns = 0;
+        for (int col = holeColumns.next(0); col >= 0; col = holeColumns.next(col + 1)) {
+            int holes = columnHoles[col];
+            for (int row = 0; row < holes; row++) {
+                fromRow[spawns] = row - holes;
+                to[spawns++] = cellOf(row, col);
+            }
+        }
+        return spawns;
     }
 
+    /**
+     * Fills the holes collapseGrid left at the top of the columns, skipping
+     * the columns without any. The colors for all of a strip's holes are
+     * drawn from the game's stream in one go, then handed out row by row, so
+     * each hole gets the color it would from one draw per cell. When the
+     * refill is split into strips, each strip draws from a stream split off
+     * the game's in strip order, so the result does not depend on thread
+     * scheduling. Cells cleared since the last collapse are collapsed first.
+     */
     public void refillGrid() {
-        for (int r = 0; r < GRID_SIZE; r++) {
-            for (int c = 0; c < GRID_SIZE; c++) {
-                if (grid[r][c] == null) {
-                    grid[r][c] = new Jewel(JewelType.getRandom());
-                }
+        if (!collapsed) collapseGrid(null, null);
+        if (cellCount <= PARALLEL_CUTOFF) {
+            wholeBoard.reset();
+            refillColumns(wholeBoard);
+            hash ^= wholeBoard.hash;
+        } else {
+            Strip[] strips = forStrips(size, size, this::refillColumns, true);
+            for (Strip strip : strips) hash ^= strip.hash;
+        }
+        holeColumns.clear();
+    }
+
+    private void refillColumns(Strip strip) {
+        int spawns = 0;
+        int deepest = 0;
+        for (int col = holeColumns.next(strip.from); col >= 0 && col < strip.to; col = holeColumns.next(col + 1)) {
+            spawns += columnHoles[col];
+            deepest = Math.max(deepest, columnHoles[col]);
+        }
+        if (spawns == 0) return;
+        if (strip.spawns == null || strip.spawns.length < spawns) strip.spawns = new byte[Math.max(spawns, size)];
+        GameRandom stream = strip.random != null ? strip.random : random;
+        stream.nextJewelTypes(strip.spawns, spawns);
+        int next = 0;
+        for (int row = 0; row < deepest; row++) {
+            for (int col = holeColumns.next(strip.from); col >= 0 && col < strip.to; col = holeColumns.next(col + 1)) {
+                if (row < columnHoles[col]) write(strip, cellOf(row, col), Jewel.codeOf(TYPES[strip.spawns[next++]], PowerUpType.NONE));
+            }
+        }
+        if (masks != null) {
+            for (int col = holeColumns.next(0); col >= 0; col = holeColumns.next(col + 1)) {
+                if (columnHoles[col] > 0) reloadColumn(col, columnHoles[col] - 1);
             }
         }
     }
-    
-    private List<Point> findLine(int r, int c, int dr, int dc) {
-        List<Point> line = new ArrayList<>();
-        Jewel startJewel = getJewel(r, c);
-        if (startJewel == null) return line;
-        JewelType type = startJewel.getType();
-        for (int i = 0; i < GRID_SIZE; i++) {
-            int newR = r + i * dr;
-            int newC = c + i * dc;
-            Jewel currentJewel = getJewel(newR, newC);
-            if (currentJewel != null && currentJewel.getType() == type) {
-                line.add(new Point(newR, newC));
+
+    /**
+     * Brings the bitboard up to date with a column rewritten in place, rows 0
+     * to lowestRow of it changed.
+     */
+    private void reloadColumn(int col, int lowestRow) {
+        masks.loadColumn(col, cells);
+        dirtyRows |= (2 << lowestRow) - 1;
+        dirtyCols |= 1 << col;
+        moveIndex.invalidate();
+    }
+
+    /**
+     * Joins the lines found by the last scan into match groups where a vertical
+     * line crosses a horizontal one, then labels each group in one pass over
+     * its lines and crossings. Most scans find no crossing, which the bitboard
+     * shows at once; otherwise crossings are found by binary search over the
+     * horizontal lines, which come sorted by start cell. Nothing is allocated
+     * once the arrays have grown to fit.
+     *
+     * A group's power-up goes in the swapped cell if the swap made the group,
+     * else where its lines cross (the most central crossing), else at the
+     * line's start.
+     *
+     * Runs on first use after a scan, so scans that are only looked at as
+     * cells do not pay for it.
+     */
+    private void groupLines() {
+        if (grouped) return;
+        grouped = true;
+        groupCount = 0;
+        if (lineCount == 0) return;
+        if (lineGroup.length < lineCount) {
+            int capacity = lineStart.length;
+            lineGroup = new int[capacity];
+            groupShape = new int[capacity];
+            groupSize = new int[capacity];
+            groupType = new int[capacity];
+            groupPowerUp = new int[capacity];
+            groupPowerUpCell = new int[capacity];
+        }
+        long crossings = crossingMask();
+        if (crossings == 0L) {
+            for (int line = 0; line < lineCount; line++) {
+                lineGroup[line] = line;
+                startGroup(line, line);
+            }
+            groupCount = lineCount;
+        } else {
+            groupCrossingLines(crossings);
+        }
+        for (int group = 0; group < groupCount; group++) {
+            int longest = groupPowerUp[group];
+            int bend = groupShape[group];
+            if (bend < 0) {
+                groupShape[group] = (longest >= 5 ? MatchShape.LINE_5 : longest == 4 ? MatchShape.LINE_4 : MatchShape.LINE_3).ordinal();
             } else {
+                groupShape[group] = (bend == 0 ? MatchShape.L : bend == 1 ? MatchShape.T : MatchShape.CROSS).ordinal();
+            }
+            groupPowerUp[group] = longest >= 5 ? CUBE : longest == 4 || bend >= 0 ? FLAME : PLAIN;
+        }
+        placeAtSwap(swapCell1);
+        placeAtSwap(swapCell2);
+    }
+
+    /**
+     * Starts a group with one line. Until the groups are labelled, groupShape
+     * holds the most central crossing seen (-1 for none, then 0 L, 1 T, 2 cross)
+     * and groupPowerUp the longest line.
+     */
+    private void startGroup(int group, int line) {
+        groupShape[group] = -1;
+        groupSize[group] = lineLength[line];
+        groupType[group] = Jewel.typeOrdinalOf(cells[lineStart[line]]);
+        groupPowerUp[group] = lineLength[line];
+        groupPowerUpCell[group] = lineStart[line];
+    }
+
+    /**
+     * @return the cells where a horizontal and a vertical line cross. Boards
+     * without a bitboard answer every cell if there are lines both ways, and
+     * check each cell by search.
+     */
+    private long crossingMask() {
+        if (masks == null) return firstVerticalLine > 0 && firstVerticalLine < lineCount ? -1L : 0L;
+        long horizontal = 0L;
+        long vertical = 0L;
+        for (int line = 0; line < firstVerticalLine; line++) {
+            horizontal |= (-1L >>> (64 - lineLength[line])) << lineStart[line];
+        }
+        for (int line = firstVerticalLine; line < lineCount; line++) {
+            vertical |= (BitBoard.columnsMask(1) >>> (64 - DEFAULT_SIZE * lineLength[line])) << lineStart[line];
+        }
+        return horizontal & vertical;
+    }
+
+    /**
+     * Unions crossing lines, numbers the groups in order of their first line,
+     * and records each crossing's cell and bend.
+     */
+    private void groupCrossingLines(long crossings) {
+        // Union-find over lines, in lineGroup; a root is its group's first line
+        for (int line = 0; line < lineCount; line++) lineGroup[line] = line;
+        for (int line = firstVerticalLine; line < lineCount; line++) {
+            for (int k = 0, cell = lineStart[line]; k < lineLength[line]; k++, cell += size) {
+                if ((crossings & (1L << cell)) == 0L) continue;
+                int crossed = horizontalLineAt(cell);
+                if (crossed != NO_CELL) {
+                    int a = rootOf(crossed);
+                    int b = rootOf(line);
+                    if (a != b) lineGroup[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+        for (int line = 0; line < lineCount; line++) lineGroup[line] = rootOf(line);
+        // A root comes before the rest of its lines, so its number is ready for them
+        for (int line = 0; line < lineCount; line++) {
+            int root = lineGroup[line];
+            if (root == line) {
+                lineGroup[line] = groupCount;
+                startGroup(groupCount++, line);
+            } else {
+                int group = lineGroup[line] = lineGroup[root];
+                groupSize[group] += lineLength[line];
+                groupPowerUp[group] = Math.max(groupPowerUp[group], lineLength[line]);
+            }
+        }
+        // A crossing's bend is how many of its two lines it splits
+        for (int line = firstVerticalLine; line < lineCount; line++) {
+            int group = lineGroup[line];
+            for (int k = 0, cell = lineStart[line]; k < lineLength[line]; k++, cell += size) {
+                if ((crossings & (1L << cell)) == 0L) continue;
+                int crossed = horizontalLineAt(cell);
+                if (crossed == NO_CELL) continue;
+                groupSize[group]--;
+                int across = cell - lineStart[crossed];
+                int bend = (k > 0 && k < lineLength[line] - 1 ? 1 : 0)
+                        + (across > 0 && across < lineLength[crossed] - 1 ? 1 : 0);
+                if (bend > groupShape[group]) {
+                    groupShape[group] = bend;
+                    groupPowerUpCell[group] = cell;
+                }
+            }
+        }
+    }
+
+    private int rootOf(int line) {
+        while (lineGroup[line] != line) {
+            lineGroup[line] = lineGroup[lineGroup[line]];
+            line = lineGroup[line];
+        }
+        return line;
+    }
+
+    private void placeAtSwap(int cell) {
+        if (cell == NO_CELL) return;
+        int group = groupAt(cell);
+        if (group >= 0) groupPowerUpCell[group] = cell;
+    }
+
+    /**
+     * @return the horizontal line through the cell, or NO_CELL.
+     */
+    private int horizontalLineAt(int cell) {
+        int low = 0;
+        int high = firstVerticalLine - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (lineStart[mid] <= cell) low = mid + 1;
+            else high = mid - 1;
+        }
+        // high is the last line starting at or before the cell; lines never wrap rows
+        return high >= 0 && cell < lineStart[high] + lineLength[high] ? high : NO_CELL;
+    }
+
+    /**
+     * @return the vertical line through the cell, or NO_CELL. Vertical lines
+     * are sorted by column, then row.
+     */
+    private int verticalLineAt(int cell) {
+        int key = colOf(cell) * size + rowOf(cell);
+        int low = firstVerticalLine;
+        int high = lineCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = lineStart[mid];
+            if (colOf(start) * size + rowOf(start) <= key) low = mid + 1;
+            else high = mid - 1;
+        }
+        if (high < firstVerticalLine) return NO_CELL;
+        int start = lineStart[high];
+        return colOf(start) == colOf(cell) && rowOf(cell) < rowOf(start) + lineLength[high] ? high : NO_CELL;
+    }
+
+    /**
+     * @return the match group the cell belongs to, or -1 if it was not matched.
+     */
+    private int groupAt(int cell) {
+        int line = horizontalLineAt(cell);
+        if (line == NO_CELL) line = verticalLineAt(cell);
+        return line == NO_CELL ? -1 : lineGroup[line];
+    }
+
+    // --- Match groups found by the last findMatches; call getMatchGroupCount first ---
+
+    public int getMatchGroupCount() {
+        groupLines();
+        return groupCount;
+    }
+
+    public MatchShape getMatchShape(int group) { return SHAPES[groupShape[group]]; }
+    /** @return how many cells the group's lines cover. */
+    public int getMatchGroupSize(int group) { return groupSize[group]; }
+    public JewelType getMatchGroupType(int group) { return TYPES[groupType[group]]; }
+    /** @return the power-up clearing the group creates, NONE for a plain line of three. */
+    public PowerUpType getMatchGroupPowerUp(int group) { return POWER_UPS[groupPowerUp[group]]; }
+    /** @return the cell the group's power-up goes in. */
+    public int getMatchGroupPowerUpCell(int group) { return groupPowerUpCell[group]; }
+
+    /**
+     * Adds the group's cells to the set.
+     */
+    public void addMatchGroupCells(int group, CellSet cells) {
+        for (int line = 0; line < lineCount; line++) {
+            if (lineGroup[line] != group) continue;
+            int step = line < firstVerticalLine ? 1 : size;
+            for (int k = 0, cell = lineStart[line]; k < lineLength[line]; k++, cell += step) cells.add(cell);
+        }
+    }
+
+    /**
+     * Records the run of same-colored jewels starting at a cell, restricted to
+     * the cells of the precomputed match mask for that direction.
+     * @return the run's length, or 0 if it is shorter than three.
+     */
+    private int findLine(long matchMask, int start, int step, int maxLength) {
+        if ((matchMask & (1L << start)) == 0L) return 0;
+        int type = Jewel.typeOrdinalOf(cells[start]);
+        int length = 0;
+        for (int cell = start; length < maxLength; cell += step, length++) {
+            int code = cells[cell];
+            if (code == Jewel.EMPTY_CODE || Jewel.typeOrdinalOf(code) != type
+                    || (matchMask & (1L << cell)) == 0L) {
                 break;
             }
         }
-        return line.size() >= 3 ? line : new ArrayList<>();
+        if (length < 3) return 0;
+        addLine(start, length);
+        return length;
+    }
+
+    private void addLine(int start, int length) {
+        if (lineCount == lineStart.length) {
+            lineStart = Arrays.copyOf(lineStart, lineCount * 2);
+            lineLength = Arrays.copyOf(lineLength, lineCount * 2);
+        }
+        lineStart[lineCount] = start;
+        lineLength[lineCount] = length;
+        lineCount++;
+    }
+
+    private void appendLines(Strip strip) {
+        for (int i = 0; i < strip.lineCount; i++) addLine(strip.lineStart[i], strip.lineLength[i]);
+    }
+
+    // --- Fork/join strips, for boards without a bitboard ---
+
+    /**
+     * A range [from, to) of rows, columns or bitset words handled by one task,
+     * with room for what the task finds.
+     */
+    private static final class Strip extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from;
+        final int to;
+        final StripBody body;
+        GameRandom random;
+        // Refill colors drawn for the strip's holes, as JewelType ordinals
+        byte[] spawns;
+        long hash;
+        int count;
+        boolean found;
+        int[] lineStart = new int[16];
+        int[] lineLength = new int[16];
+        int lineCount;
+
+        Strip(int from, int to, StripBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            body.run(this);
+        }
+
+        void reset() {
+            hash = 0L;
+            count = 0;
+            found = false;
+            lineCount = 0;
+        }
+
+        void addLine(int start, int length) {
+            if (lineCount == lineStart.length) {
+                lineStart = Arrays.copyOf(lineStart, lineCount * 2);
+                lineLength = Arrays.copyOf(lineLength, lineCount * 2);
+            }
+            lineStart[lineCount] = start;
+            lineLength[lineCount] = length;
+            lineCount++;
+        }
+    }
+
+    private interface StripBody {
+        void run(Strip strip);
+    }
+
+    private Strip[] forStrips(int units, int cellsPerUnit, StripBody body) {
+        return forStrips(units, cellsPerUnit, body, false);
+    }
+
+    /**
+     * Splits [0, units) into strips of about PARALLEL_CUTOFF cells and runs them,
+     * on the pool if there is more than one.
+     * @param splitRandom give each strip its own stream split off the game's
+     * @return the strips, in order.
+     */
+    private Strip[] forStrips(int units, int cellsPerUnit, StripBody body, boolean splitRandom) {
+        int perStrip = Math.max(1, PARALLEL_CUTOFF / cellsPerUnit);
+        int count = (units + perStrip - 1) / perStrip;
+        Strip[] strips = new Strip[count];
+        for (int i = 0; i < count; i++) {
+            strips[i] = new Strip(i * perStrip, Math.min(units, (i + 1) * perStrip), body);
+            if (count > 1 && splitRandom) strips[i].random = random.split();
+        }
+        if (count == 1) {
+            strips[0].compute();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(strips);
+                }
+            });
+        }
+        return strips;
+    }
+
+    /**
+     * Writes a cell from inside a strip, bypassing setJewel. The hash change is
+     * collected in the strip and merged once all strips are done. Bitboard
+     * boards run as a single strip and reload each rewritten column after.
+     */
+    private void write(Strip strip, int cell, int code) {
+        strip.hash ^= Zobrist.key(cell, cells[cell]) ^ Zobrist.key(cell, code);
+        cells[cell] = (byte) code;
+    }
+
+    private int wordCount() {
+        return (cellCount + 63) >>> 6;
+    }
+
+    private void markMatches(Strip strip) {
+        for (int w = strip.from; w < strip.to; w++) {
+            long word = 0L;
+            int end = Math.min(cellCount, (w + 1) << 6);
+            for (int cell = w << 6; cell < end; cell++) {
+                if (isMatched(cell)) word |= 1L << cell;
+            }
+            matchCells.setWord(w, word);
+        }
+    }
+
+    private void markType(Strip strip, int type, CellSet into) {
+        for (int w = strip.from; w < strip.to; w++) {
+            long word = 0L;
+            int end = Math.min(cellCount, (w + 1) << 6);
+            for (int cell = w << 6; cell < end; cell++) {
+                int code = cells[cell];
+                if (code != Jewel.EMPTY_CODE && Jewel.typeOrdinalOf(code) == type) word |= 1L << cell;
+            }
+            into.setWord(w, word);
+        }
+    }
+
+    private void findRowLines(Strip strip) {
+        for (int r = strip.from; r < strip.to; r++) {
+            for (int c = 0; c < size; ) {
+                int length = runLength(r, c, 0, 1);
+                if (length >= 3) strip.addLine(cellOf(r, c), length);
+                c += length;
+            }
+        }
+    }
+
+    private void findColumnLines(Strip strip) {
+        for (int c = strip.from; c < strip.to; c++) {
+            for (int r = 0; r < size; ) {
+                int length = runLength(r, c, 1, 0);
+                if (length >= 3) strip.addLine(cellOf(r, c), length);
+                r += length;
+            }
+        }
+    }
+
+    private void findMoveOrMatch(Strip strip) {
+        int end = cellOf(strip.to, 0);
+        for (int cell = cellOf(strip.from, 0); cell < end && !strip.found; cell++) {
+            strip.found = isMatched(cell)
+                    || (colOf(cell) + 1 < size && isLegalSwap(cell, cell + 1))
+                    || (rowOf(cell) + 1 < size && isLegalSwap(cell, cell + size));
+        }
+    }
+
+    /**
+     * @return how many cells from (r, c) on, stepping by (dr, dc), hold the
+     * color of (r, c); 1 for an empty cell.
+     */
+    private int runLength(int r, int c, int dr, int dc) {
+        int type = typeAt(r, c);
+        int length = 1;
+        if (type < 0) return length;
+        while (typeAt(r + length * dr, c + length * dc) == type) length++;
+        return length;
+    }
+
+    private boolean isMatched(int cell) {
+        int r = rowOf(cell);
+        int c = colOf(cell);
+        int type = typeAt(r, c);
+        return type >= 0 && (lineThrough(r, c, type, 0, 1, -1, -1) || lineThrough(r, c, type, 1, 0, -1, -1));
+    }
+
+    /**
+     * A swap is legal when either jewel is a Hyper Cube, or when one of the two
+     * jewels completes a line in its new cell.
+     */
+    private boolean isLegalSwap(int cell1, int cell2) {
+        int code1 = cells[cell1];
+        int code2 = cells[cell2];
+        if (code1 == Jewel.EMPTY_CODE || code2 == Jewel.EMPTY_CODE) return false;
+        if (Jewel.powerUpOrdinalOf(code1) == CUBE || Jewel.powerUpOrdinalOf(code2) == CUBE) return true;
+        int type1 = Jewel.typeOrdinalOf(code1);
+        int type2 = Jewel.typeOrdinalOf(code2);
+        if (type1 == type2) return false;
+        return completesLine(cell1, type2, cell2, type1) || completesLine(cell2, type1, cell1, type2);
+    }
+
+    private boolean completesLine(int cell, int type, int otherCell, int otherType) {
+        int r = rowOf(cell);
+        int c = colOf(cell);
+        return lineThrough(r, c, type, 0, 1, otherCell, otherType)
+                || lineThrough(r, c, type, 1, 0, otherCell, otherType);
+    }
+
+    /**
+     * @return true if (r, c), taken to hold the given color, is part of a line of
+     * three along (dr, dc). overrideCell reads as overrideType, so a swap can be
+     * tested without performing it.
+     */
+    private boolean lineThrough(int r, int c, int type, int dr, int dc, int overrideCell, int overrideType) {
+        int length = 1;
+        for (int k = 1; k <= 2 && typeAt(r - k * dr, c - k * dc, overrideCell, overrideType) == type; k++) length++;
+        for (int k = 1; k <= 2 && typeAt(r + k * dr, c + k * dc, overrideCell, overrideType) == type; k++) length++;
+        return length >= 3;
+    }
+
+    /**
+     * @return the color ordinal at (r, c), or -1 if the cell is empty or off the board.
+     */
+    private int typeAt(int r, int c) {
+        return typeAt(r, c, -1, -1);
+    }
+
+    private int typeAt(int r, int c, int overrideCell, int overrideType) {
+        if (r < 0 || r >= size || c < 0 || c >= size) return -1;
+        int cell = cellOf(r, c);
+        if (cell == overrideCell) return overrideType;
+        int code = cells[cell];
+        return code == Jewel.EMPTY_CODE ? -1 : Jewel.typeOrdinalOf(code);
     }
 
     public void swapJewels(Point p1, Point p2) {
-        Jewel temp = getJewel(p1.x, p1.y);
-        grid[p1.x][p1.y] = getJewel(p2.x, p2.y);
-        grid[p2.x][p2.y] = temp;
+        swapJewels(cellOf(p1.x, p1.y), cellOf(p2.x, p2.y));
+    }
+
+    public void swapJewels(int cell1, int cell2) {
+        Jewel temp = getJewel(cell1);
+        setJewel(cell1, getJewel(cell2));
+        setJewel(cell2, temp);
+    }
+
+    void setJewel(int row, int col, Jewel jewel) {
+        setJewel(cellOf(row, col), jewel);
+    }
+
+    /**
+     * Every write to the grid outside the fork/join strips goes through here so
+     * the hash and the bitboard masks stay in sync.
+     */
+    void setJewel(int cell, Jewel jewel) {
+        int code = jewel == null ? Jewel.EMPTY_CODE : jewel.getCode();
+        if (masks != null) {
+            // Packed cells and bitboard indices coincide on a DEFAULT_SIZE board.
+            int row = cell / BitBoard.SIZE;
+            int col = cell % BitBoard.SIZE;
+            Jewel old = getJewel(cell);
+            if (old == null || jewel == null || old.getType() != jewel.getType()) {
+                dirtyRows |= 1 << row;
+                dirtyCols |= 1 << col;
+            }
+            if (old != jewel) {
+                moveIndex.invalidate();
+            }
+            masks.set(row, col, jewel);
+        }
+        if (code == Jewel.EMPTY_CODE) {
+            holeColumns.add(colOf(cell));
+            collapsed = false;
+        }
+        hash ^= Zobrist.key(cell, cells[cell]) ^ Zobrist.key(cell, code);
+        cells[cell] = (byte) code;
+    }
+
+    private Set<Point> toPoints(CellSet set) {
+        Set<Point> points = new HashSet<>();
+        for (int cell = set.next(0); cell >= 0; cell = set.next(cell + 1)) {
+            points.add(toPoint(cell));
+        }
+        return points;
     }
 
     public boolean isAdjacent(Point p1, Point p2) {
         return (Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y)) == 1;
     }
-    
+
+    public boolean isAdjacent(int cell1, int cell2) {
+        return (Math.abs(rowOf(cell1) - rowOf(cell2)) + Math.abs(colOf(cell1) - colOf(cell2))) == 1;
+    }
+
     public Jewel getJewel(int row, int col) {
-        if (row < 0 || row >= GRID_SIZE || col < 0 || col >= GRID_SIZE) {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
             return null;
         }
-        return grid[row][col];
+        return Jewel.fromCode(cells[cellOf(row, col)]);
+    }
+
+    public Jewel getJewel(int cell) {
+        return Jewel.fromCode(cells[cell]);
     }
-}
 
+    // --- Packed cell indices ---
 
+    public GameRandom getRandom() { return random; }
+    /** @return the Zobrist hash of the grid; equal grids have equal hashes. */
+    public long getHash() { return hash; }
+    /** @return how many power-ups of the type this board has created; not copied by copyFrom. */
+    public int getPowerUpsCreated(PowerUpType type) { return powerUpsCreated[type.ordinal()]; }
+    /** @return match groups of the shape cleared over the board's life; not copied by copyFrom. */
+    public int getShapesCleared(MatchShape shape) { return shapesCleared[shape.ordinal()]; }
+    /** @return how many times shuffle has rearranged this board; not copied by copyFrom. */
+    public int getShuffles() { return shuffles; }
+    public int getSize() { return size; }
+    public int getCellCount() { return cellCount; }
+    public int cellOf(int row, int col) { return row * size + col; }
+    public int rowOf(int cell) { return cell / size; }
+    public int colOf(int cell) { return cell % size; }
+    public Point toPoint(int cell) { return new Point(rowOf(cell), colOf(cell)); }
+}
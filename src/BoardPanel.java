@@ -1,52 +1,92 @@
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import javax.swing.*;
 
 /**
  * Visually represents the game board and handles all animations.
+ *
+ * The background and grid lines are rendered once into an image. Animations
+ * repaint only the cells they touch, and painting skips cells outside the clip.
+ * Painted pixels are counted so the saving can be checked; run with
+ * -Dcrystalyze.paintStats=true to print them, and the clock's frame times,
+ * after every animation.
+ *
+ * All animations run on one AnimationClock and last ANIMATION_MILLIS of
+ * wall-clock time, however busy the event thread is.
+ *
+ * A cascade resolved up front (a CascadeTimeline) is played back with its
+ * phases overlapping: columns start to fall halfway through the clear, refills
+ * drop in with them, and each later link of a chain plays a little faster.
  */
 public class BoardPanel extends JPanel 
 {
 
-    public static final int GRID_SIZE = 8;
+    // The panel is sized for a standard board; the grid itself is drawn at the board's size.
+    public static final int GRID_SIZE = Board.DEFAULT_SIZE;
     public static final int JEWEL_SIZE = 60;
-    private static final int ANIMATION_DELAY = 10;
-    private static final int ANIMATION_STEPS = 15;
+    private static final int FRAME_MILLIS = 10;
+    private static final int ANIMATION_MILLIS = 150;
+    // Timeline playback: the fall starts this far into the clear, and each
+    // link runs at PACE_STEP less than the one before, down to MIN_PACE.
+    private static final float FALL_OVERLAP = 0.5f;
+    private static final float PACE_STEP = 0.15f;
+    private static final float MIN_PACE = 0.5f;
+    private static final Color BACKGROUND = new Color(30, 30, 30);
+    private static final Color GRID_LINES = new Color(80, 80, 80);
+    private static final boolean PRINT_PAINT_STATS = Boolean.getBoolean("crystalyze.paintStats");
 
     private GameController gameController;
     
+    private final AnimationClock clock = new AnimationClock(FRAME_MILLIS);
     private float animationProgress = 0.0f;
-    private Timer animationTimer;
+    private AnimationClock.Animation animation;
     
     private Point swapFrom, swapTo;
     private Set<Point> highlightingJewels = new HashSet<>();
     private Set<Point> destroyingJewels = new HashSet<>();
     private Set<Point> explodingJewels = new HashSet<>();
-    private Map<Point, Point> fallingJewels = new HashMap<>();
+    // Step mode falls: jewel i drops from row fallFromRow[i] (negative above
+    // the board) to cell fallTo[i] of a board fallSize cells wide.
+    private int[] fallFromRow;
+    private int[] fallTo;
+    private int fallCount;
+    private int fallSize;
+    private CellSet fallingCells;
+    private CascadeTimeline timeline;
+    private float[] linkStarts;
+    private float timelineMillis;
+    private Runnable timelineFinish;
+    private JewelSprites sprites;
+    private BufferedImage background;
+    private int backgroundSize;
+
+    private long framesPainted;
+    private long pixelsPainted;
 
     public BoardPanel(GameController controller) 
     {
         this.gameController = controller;
         setPreferredSize(new Dimension(GRID_SIZE * JEWEL_SIZE, GRID_SIZE * JEWEL_SIZE));
-        setBackground(new Color(30, 30, 30));
+        setBackground(BACKGROUND);
 
         addMouseListener(new MouseAdapter() 
         {
             @Override
             public void mousePressed(MouseEvent e) 
             {
-                if (gameController.isGameActive() && !gameController.isAnimating()) {
+                // Clicking during a cascade's playback skips to its end
+                if (gameController.isGameActive() && (!gameController.isAnimating() || isPlayingTimeline())) {
                     int col = e.getX() / JEWEL_SIZE;
                     int row = e.getY() / JEWEL_SIZE;
-                    if (row < GRID_SIZE && col < GRID_SIZE) 
+                    int size = gameController.getSnapshot().getSize();
+                    if (row < size && col < size) 
                     {
                         gameController.jewelClicked(row, col);
                     }
@@ -59,13 +99,13 @@ public class BoardPanel extends JPanel
     {
         this.swapFrom = from;
         this.swapTo = to;
-        startAnimation(onFinish);
+        startAnimation(union(cellBounds(from), cellBounds(to)), onFinish);
     }
 
     public void animateHighlight(Set<Point> matches, Runnable onFinish) 
     {
         this.highlightingJewels = new HashSet<>(matches);
-        startAnimation(() -> {
+        startAnimation(cellBounds(matches, 0), () -> {
             highlightingJewels.clear();
             onFinish.run();
         });
@@ -74,7 +114,7 @@ public class BoardPanel extends JPanel
     public void animateDestruction(Set<Point> matches, Runnable onFinish) 
     {
         this.destroyingJewels = new HashSet<>(matches);
-        startAnimation(() -> {
+        startAnimation(cellBounds(matches, 0), () -> {
             destroyingJewels.clear();
             onFinish.run();
         });
@@ -83,60 +123,200 @@ public class BoardPanel extends JPanel
     public void animateExplosion(Set<Point> centers, Runnable onFinish) 
     {
         this.explodingJewels = new HashSet<>(centers);
-        startAnimation(() -> {
+        // The blast grows to 1.5 cells around each center
+        startAnimation(cellBounds(centers, JEWEL_SIZE), () -> {
             explodingJewels.clear();
             onFinish.run();
         });
     }
 
-    public void animateFall(Map<Point, Point> fallMap, Runnable onFinish) 
+    /**
+     * Drops a collapsed and refilled step's jewels into place, the new ones
+     * from above the board. The snapshot already shows where they land.
+     */
+    public void animateFall(CascadeStep step, Runnable onFinish) 
     {
-        this.fallingJewels = new HashMap<>(fallMap);
-        startAnimation(() -> {
-            fallingJewels.clear();
+        int size = gameController.getSnapshot().getSize();
+        int count = step.getFallCount() + step.getSpawnCount();
+        fallFromRow = new int[count];
+        fallTo = new int[count];
+        fallSize = size;
+        fallingCells = new CellSet(size * size);
+        for (int i = 0; i < step.getFallCount(); i++) 
+        {
+            fallFromRow[i] = step.getFallFrom(i) / size;
+            fallTo[i] = step.getFallTo(i);
+        }
+        for (int i = 0; i < step.getSpawnCount(); i++) 
+        {
+            fallFromRow[step.getFallCount() + i] = step.getSpawnFromRow(i);
+            fallTo[step.getFallCount() + i] = step.getSpawnTo(i);
+        }
+        Rectangle region = null;
+        for (int i = 0; i < count; i++) 
+        {
+            fallingCells.add(fallTo[i]);
+            Point to = new Point(fallTo[i] / size, fallTo[i] % size);
+            region = union(region, union(cellBounds(to), cellBounds(new Point(Math.max(0, fallFromRow[i]), to.y))));
+        }
+        fallCount = count;
+        startAnimation(region == null ? new Rectangle() : region, () -> {
+            fallCount = 0;
             onFinish.run();
         });
     }
 
-    private void startAnimation(Runnable onFinish) 
+    /**
+     * Plays back a resolved cascade. The board already holds the final
+     * position, so the panel draws from the timeline until it ends.
+     */
+    public void playTimeline(CascadeTimeline timeline, Runnable onFinish) 
+    {
+        List<CascadeTimeline.Link> links = timeline.getLinks();
+        linkStarts = new float[links.size() + 1];
+        for (int i = 0; i < links.size(); i++) 
+        {
+            linkStarts[i + 1] = linkStarts[i] + linkLength(pace(i));
+        }
+        this.timeline = timeline;
+        this.timelineMillis = 0;
+        this.timelineFinish = () -> 
+        {
+            this.timeline = null;
+            this.timelineFinish = null;
+            onFinish.run();
+        };
+
+        Rectangle region = new Rectangle();
+        CellSet touched = timeline.getTouchedCells();
+        for (int cell = touched.next(0); cell >= 0; cell = touched.next(cell + 1)) 
+        {
+            region = union(region, cellBounds(new Point(cell / timeline.getSize(), cell % timeline.getSize())));
+        }
+        if (timeline.hasExplosions()) region.grow(JEWEL_SIZE, JEWEL_SIZE);
+        float total = linkStarts[links.size()];
+        startAnimation(region, Math.round(total), () -> 
+        {
+            if (timelineFinish != null) timelineFinish.run();
+        }, progress -> timelineMillis = progress * total);
+    }
+
+    public boolean isPlayingTimeline() { return timeline != null; }
+
+    /**
+     * Jumps to the end of the timeline being played, if any, running its finish action.
+     * @return true if a timeline was playing.
+     */
+    public boolean skipTimeline() 
+    {
+        if (timeline == null) return false;
+        animation.cancel();
+        animationProgress = 0.0f;
+        timelineFinish.run();
+        repaint();
+        return true;
+    }
+
+    private static float pace(int link) 
+    {
+        return Math.max(MIN_PACE, 1.0f - PACE_STEP * link);
+    }
+
+    private static float linkLength(float pace) 
+    {
+        return ANIMATION_MILLIS * pace * (2 + FALL_OVERLAP);
+    }
+
+    private void startAnimation(Rectangle region, Runnable onFinish) 
+    {
+        startAnimation(region, ANIMATION_MILLIS, onFinish, progress -> {});
+    }
+
+    /**
+     * Runs an animation, repainting only the given region on each frame.
+     */
+    private void startAnimation(Rectangle region, long millis, Runnable onFinish, AnimationClock.FrameListener onFrame) 
     {
         animationProgress = 0.0f;
-        if (animationTimer != null && animationTimer.isRunning()) 
+        long framesBefore = framesPainted;
+        long pixelsBefore = pixelsPainted;
+        if (animation != null) 
         {
-            animationTimer.stop();
+            animation.cancel();
         }
-        animationTimer = new Timer(ANIMATION_DELAY, e -> 
+        animation = clock.start(millis, progress -> 
+        {
+            animationProgress = progress;
+            onFrame.frame(progress);
+            repaint(region);
+        }, () -> 
         {
-            animationProgress += 1.0f / ANIMATION_STEPS;
-            if (animationProgress >= 1.0f) 
+            animationProgress = 0.0f;
+            swapFrom = swapTo = null;
+            if (PRINT_PAINT_STATS) 
             {
-                animationTimer.stop();
-                animationProgress = 0.0f;
-                swapFrom = swapTo = null;
-                onFinish.run();
+                long frames = Math.max(1, framesPainted - framesBefore);
+                System.out.printf("animation: %d frames, %d pixels per frame (%d cells); clock: %s%n",
+                        frames, (pixelsPainted - pixelsBefore) / frames, region.width * region.height / (JEWEL_SIZE * JEWEL_SIZE), clock);
             }
-            repaint();
+            onFinish.run();
+            repaint(region);
         });
-        animationTimer.start();
     }
+
+    public AnimationClock getAnimationClock() { return clock; }
     
     @Override
     protected void paintComponent(Graphics g) 
     {
-        super.paintComponent(g);
+        long start = System.nanoTime();
+        GameEvents.PaintEvent event = new GameEvents.PaintEvent();
+        event.begin();
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        framesPainted++;
+        pixelsPainted += (long) clip.width * clip.height;
+        paintBoard(g2d, clip);
+        event.end();
+        if (event.shouldCommit()) 
+        {
+            event.pixels = (long) clip.width * clip.height;
+            event.animating = animation != null && animation.isRunning();
+            event.commit();
+        }
+        Metrics.PAINT.recordSince(start);
+    }
 
-        Board board = gameController.getBoard();
-        if (board == null) return;
+    private void paintBoard(Graphics2D g2d, Rectangle clip) 
+    {
+
+        // Paints the latest snapshot; the live board belongs to the game-logic thread
+        GameSnapshot board = gameController.getSnapshot();
+        if (board == null) 
+        {
+            super.paintComponent(g2d);
+            return;
+        }
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        // **FIX**: Draw the grid lines first
-        drawGrid(g2d);
+        // Background and grid lines come from the cached image
+        g2d.drawImage(getBackgroundImage(g2d, board.getSize()), 0, 0, getWidth(), getHeight(), null);
+        if (timeline != null) 
+        {
+            drawTimeline(g2d, clip);
+            drawOverlays(g2d);
+            return;
+        }
 
-        // Draw static jewels
-        for (int r = 0; r < GRID_SIZE; r++) 
+        // Draw static jewels, only in the cells the clip touches
+        int firstRow = Math.max(0, clip.y / JEWEL_SIZE);
+        int lastRow = Math.min(board.getSize() - 1, (clip.y + clip.height - 1) / JEWEL_SIZE);
+        int firstCol = Math.max(0, clip.x / JEWEL_SIZE);
+        int lastCol = Math.min(board.getSize() - 1, (clip.x + clip.width - 1) / JEWEL_SIZE);
+        for (int r = firstRow; r <= lastRow; r++) 
         {
-            for (int c = 0; c < GRID_SIZE; c++) 
+            for (int c = firstCol; c <= lastCol; c++) 
             {
                 Point p = new Point(r, c);
                 if (isAnimating(p)) continue;
@@ -151,7 +331,23 @@ public class BoardPanel extends JPanel
         if (swapFrom != null) drawSwappingJewels(g2d);
         if (!destroyingJewels.isEmpty()) drawDestroyingJewels(g2d);
         if (!explodingJewels.isEmpty()) drawExplosion(g2d);
-        if (!fallingJewels.isEmpty()) drawFallingJewels(g2d);
+        if (fallCount > 0) drawFallingJewels(g2d);
+        drawOverlays(g2d);
+    }
+
+    private void drawOverlays(Graphics2D g2d) 
+    {
+        // Draw hint
+        Move hint = gameController.getHint();
+        if (hint != null) 
+        {
+            g2d.setColor(Color.CYAN);
+            g2d.setStroke(new BasicStroke(3));
+            for (Point p : new Point[] {hint.getFrom(), hint.getTo()}) 
+            {
+                g2d.drawRect(p.y * JEWEL_SIZE + 2, p.x * JEWEL_SIZE + 2, JEWEL_SIZE - 4, JEWEL_SIZE - 4);
+            }
+        }
 
         // Draw selection highlight
         Point selected = gameController.getSelectedJewel();
@@ -163,31 +359,92 @@ public class BoardPanel extends JPanel
         }
     }
 
-    private void drawGrid(Graphics2D g2d) 
+    /**
+     * @return the panel's background with the grid lines, rendered at the screen
+     * scale and rebuilt when the panel, the board size or the scale changes.
+     */
+    private BufferedImage getBackgroundImage(Graphics2D g, int size) 
     {
-        g2d.setColor(new Color(80, 80, 80));
+        double scale = g.getTransform().getScaleX();
+        int width = (int) Math.ceil(getWidth() * scale);
+        int height = (int) Math.ceil(getHeight() * scale);
+        if (background == null || background.getWidth() != width || background.getHeight() != height || backgroundSize != size) 
+        {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            background = config != null
+                    ? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            backgroundSize = size;
+            Graphics2D bg = background.createGraphics();
+            try 
+            {
+                bg.scale(scale, scale);
+                bg.setColor(BACKGROUND);
+                bg.fillRect(0, 0, getWidth(), getHeight());
+                drawGrid(bg, size);
+            } 
+            finally 
+            {
+                bg.dispose();
+            }
+        }
+        return background;
+    }
+
+    private void drawGrid(Graphics2D g2d, int size) 
+    {
+        g2d.setColor(GRID_LINES);
         g2d.setStroke(new BasicStroke(1));
-        for (int i = 0; i < GRID_SIZE; i++) 
+        for (int i = 0; i < size; i++) 
         {
-            for (int j = 0; j < GRID_SIZE; j++) 
+            for (int j = 0; j < size; j++) 
             {
                 g2d.drawRect(i * JEWEL_SIZE, j * JEWEL_SIZE, JEWEL_SIZE, JEWEL_SIZE);
             }
         }
     }
 
+    private static Rectangle cellBounds(Point p) 
+    {
+        return new Rectangle(p.y * JEWEL_SIZE, p.x * JEWEL_SIZE, JEWEL_SIZE, JEWEL_SIZE);
+    }
+
+    /**
+     * @return the smallest rectangle holding the given cells, grown by margin pixels.
+     */
+    private static Rectangle cellBounds(Collection<Point> cells, int margin) 
+    {
+        Rectangle bounds = null;
+        for (Point p : cells) bounds = union(bounds, cellBounds(p));
+        if (bounds == null) return new Rectangle();
+        bounds.grow(margin, margin);
+        return bounds;
+    }
+
+    private static Rectangle union(Rectangle a, Rectangle b) 
+    {
+        if (a == null || a.isEmpty()) return b;
+        if (b == null || b.isEmpty()) return a;
+        return a.union(b);
+    }
+
+    // Paint statistics, for checking how much of the panel each frame repaints.
+
+    public long getFramesPainted() { return framesPainted; }
+    public long getPixelsPainted() { return pixelsPainted; }
+
     private boolean isAnimating(Point p) 
     {
         if (swapFrom != null && (p.equals(swapFrom) || p.equals(swapTo))) return true;
         if (destroyingJewels.contains(p)) return true;
-        if (fallingJewels.containsKey(p)) return true;
+        if (fallCount > 0 && fallingCells.contains(p.x * fallSize + p.y)) return true;
         return false;
     }
 
     private void drawSwappingJewels(Graphics2D g2d) 
     {
-        Jewel j1 = gameController.getBoard().getJewel(swapFrom.x, swapFrom.y);
-        Jewel j2 = gameController.getBoard().getJewel(swapTo.x, swapTo.y);
+        Jewel j1 = gameController.getSnapshot().getJewel(swapFrom.x, swapFrom.y);
+        Jewel j2 = gameController.getSnapshot().getJewel(swapTo.x, swapTo.y);
         int x1 = (int) (swapFrom.y * JEWEL_SIZE + (swapTo.y - swapFrom.y) * JEWEL_SIZE * animationProgress);
         int y1 = (int) (swapFrom.x * JEWEL_SIZE + (swapTo.x - swapFrom.x) * JEWEL_SIZE * animationProgress);
         int x2 = (int) (swapTo.y * JEWEL_SIZE - (swapTo.y - swapFrom.y) * JEWEL_SIZE * animationProgress);
@@ -201,7 +458,7 @@ public class BoardPanel extends JPanel
         float scale = 1.0f - animationProgress;
         for (Point p : destroyingJewels) 
         {
-            Jewel jewel = gameController.getBoard().getJewel(p.x, p.y);
+            Jewel jewel = gameController.getSnapshot().getJewel(p.x, p.y);
             drawJewelAt(g2d, jewel, p.x * JEWEL_SIZE, p.y * JEWEL_SIZE, scale);
         }
     }
@@ -219,91 +476,145 @@ public class BoardPanel extends JPanel
 
     private void drawFallingJewels(Graphics2D g2d) 
     {
-        for (Map.Entry<Point, Point> entry : fallingJewels.entrySet()) 
+        for (int i = 0; i < fallCount; i++) 
         {
-            Point finalPos = entry.getKey();
-            Point startPos = entry.getValue();
-            Jewel jewel = gameController.getBoard().getJewel(finalPos.x, finalPos.y);
-            int startY = startPos.x * JEWEL_SIZE;
-            int finalY = finalPos.x * JEWEL_SIZE;
+            int to = fallTo[i];
+            Jewel jewel = gameController.getSnapshot().getJewel(to / fallSize, to % fallSize);
+            int startY = fallFromRow[i] * JEWEL_SIZE;
+            int finalY = to / fallSize * JEWEL_SIZE;
             int currentY = (int) (startY + (finalY - startY) * animationProgress);
-            drawJewelAt(g2d, jewel, currentY, finalPos.y * JEWEL_SIZE, 1.0f);
+            drawJewelAt(g2d, jewel, currentY, to % fallSize * JEWEL_SIZE, 1.0f);
         }
     }
 
-    private void drawJewel(Graphics2D g, Jewel jewel, int row, int col) 
+    /**
+     * Draws the timeline at the current playback time. Within a link the
+     * matches flash, then shrink (under the blasts of any Flame Gems) while
+     * the columns above them, and the refills, start to fall.
+     */
+    private void drawTimeline(Graphics2D g2d, Rectangle clip) 
     {
-        drawJewelAt(g, jewel, row * JEWEL_SIZE, col * JEWEL_SIZE, 1.0f);
-    }
+        List<CascadeTimeline.Link> links = timeline.getLinks();
+        int index = 0;
+        while (index < links.size() - 1 && timelineMillis >= linkStarts[index + 1]) index++;
+        CascadeTimeline.Link link = links.get(index);
+        int size = timeline.getSize();
+        float pace = pace(index);
+        float phase = ANIMATION_MILLIS * pace;
+        float time = Math.min(timelineMillis - linkStarts[index], linkLength(pace));
+        float fallStart = phase * (1 + FALL_OVERLAP);
+        float fall = time < fallStart ? -1 : Math.min(1.0f, (time - fallStart) / phase);
 
-    private void drawJewelAt(Graphics2D g, Jewel jewel, int y, int x, float scale) 
-    {
-        if (jewel == null || scale <= 0) return;
-        
-        float jewelSize = JEWEL_SIZE * scale;
-        float centerX = x + JEWEL_SIZE / 2f;
-        float centerY = y + JEWEL_SIZE / 2f;
-
-        Shape shape = createJewelShape(jewel.getType(), centerX, centerY, jewelSize * 0.9f);
-
-        // Create a faceted look
-        Color baseColor = getJewelColor(jewel.getType());
-        Color highlightColor = baseColor.brighter();
-        
-        g.setColor(baseColor.darker());
-        g.fill(shape);
-        
-        AffineTransform at = AffineTransform.getTranslateInstance(centerX, centerY);
-        at.scale(0.85, 0.85);
-        at.translate(-centerX, -centerY);
-        Shape innerShape = at.createTransformedShape(shape);
-
-        g.setPaint(new RadialGradientPaint(centerX, centerY, jewelSize, new float[]{0f, 1f}, new Color[]{highlightColor, baseColor}));
-        g.fill(innerShape);
+        if (time < phase) 
+        {
+            // Highlight: the board as it was, with the matches flashing
+            boolean flash = (int) (time / phase * 20) % 2 == 0;
+            for (int cell = 0; cell < size * size; cell++) 
+            {
+                boolean matched = flash && link.getMatches().contains(cell);
+                drawTimelineJewel(g2d, clip, link.codeBefore(cell), cell / size * JEWEL_SIZE, cell % size * JEWEL_SIZE, 1.0f, matched);
+            }
+            return;
+        }
 
-      
-        if (highlightingJewels.contains(new Point(y / JEWEL_SIZE, x / JEWEL_SIZE)) && (int)(animationProgress * 20) % 2 == 0) 
+        // Static jewels, leaving out those that have started to fall
+        boolean[] falling = new boolean[size * size];
+        if (fall >= 0) 
         {
-            g.setColor(new Color(255, 255, 255, 150));
-            g.fill(shape);
+            for (int i = 0; i < link.getFallCount(); i++) 
+            {
+                int fromRow = link.getFallFromRow(i);
+                if (fromRow >= 0) falling[fromRow * size + link.getFallTo(i) % size] = true;
+            }
         }
-        
-        if (jewel.getPowerUp() != PowerUpType.NONE) 
+        for (int cell = 0; cell < size * size; cell++) 
         {
-            g.setColor(Color.WHITE);
-            g.setStroke(new BasicStroke(3 * scale));
-            float powerUpSize = jewelSize * 0.3f;
-            
-            if(jewel.getPowerUp() == PowerUpType.FLAME_GEM) 
+            if (!falling[cell]) 
             {
-                 g.draw(new Ellipse2D.Float(centerX - powerUpSize/2, centerY - powerUpSize/2, powerUpSize, powerUpSize));
-            } 
-            
-            else 
+                drawTimelineJewel(g2d, clip, link.codeCleared(cell), cell / size * JEWEL_SIZE, cell % size * JEWEL_SIZE, 1.0f, false);
+            }
+        }
+
+        float clear = (time - phase) / phase;
+        if (clear < 1.0f) 
+        {
+            for (int cell = 0; cell < size * size; cell++) 
             {
-                 g.draw(new Rectangle2D.Float(centerX - powerUpSize/2, centerY - powerUpSize/2, powerUpSize, powerUpSize));
+                if (link.isCleared(cell)) 
+                {
+                    drawTimelineJewel(g2d, clip, link.codeBefore(cell), cell / size * JEWEL_SIZE, cell % size * JEWEL_SIZE, 1.0f - clear, false);
+                }
+            }
+            CellSet centers = link.getExplosionCenters();
+            g2d.setColor(new Color(255, 200, 50, 150));
+            float radius = (JEWEL_SIZE * 1.5f) * clear;
+            for (int cell = centers.next(0); cell >= 0; cell = centers.next(cell + 1)) 
+            {
+                float centerX = cell % size * JEWEL_SIZE + JEWEL_SIZE / 2;
+                float centerY = cell / size * JEWEL_SIZE + JEWEL_SIZE / 2;
+                g2d.fill(new Ellipse2D.Float(centerX - radius, centerY - radius, radius * 2, radius * 2));
             }
         }
+
+        if (fall >= 0) 
+        {
+            for (int i = 0; i < link.getFallCount(); i++) 
+            {
+                int to = link.getFallTo(i);
+                int startY = link.getFallFromRow(i) * JEWEL_SIZE;
+                int finalY = to / size * JEWEL_SIZE;
+                int currentY = (int) (startY + (finalY - startY) * fall);
+                drawTimelineJewel(g2d, clip, link.codeAfter(to), currentY, to % size * JEWEL_SIZE, 1.0f, false);
+            }
+        }
+    }
+
+    private void drawTimelineJewel(Graphics2D g, Rectangle clip, int code, int y, int x, float scale, boolean flash) 
+    {
+        if (code == Jewel.EMPTY_CODE || !clip.intersects(x, y, JEWEL_SIZE, JEWEL_SIZE)) return;
+        drawJewelAt(g, Jewel.fromCode(code), y, x, scale, flash);
+    }
+
+    private void drawJewel(Graphics2D g, Jewel jewel, int row, int col) 
+    {
+        drawJewelAt(g, jewel, row * JEWEL_SIZE, col * JEWEL_SIZE, 1.0f);
     }
 
-    private Shape createJewelShape(JewelType type, float cx, float cy, float size) 
+    private void drawJewelAt(Graphics2D g, Jewel jewel, int y, int x, float scale) 
     {
-        float radius = size / 2;
-        return new Ellipse2D.Float(cx - radius, cy - radius, size, size);
+        boolean flash = !highlightingJewels.isEmpty()
+                && highlightingJewels.contains(new Point(y / JEWEL_SIZE, x / JEWEL_SIZE))
+                && (int)(animationProgress * 20) % 2 == 0;
+        drawJewelAt(g, jewel, y, x, scale, flash);
+    }
+
+    private void drawJewelAt(Graphics2D g, Jewel jewel, int y, int x, float scale, boolean flash) 
+    {
+        if (jewel == null || scale <= 0) return;
+
+        Image sprite = getSprites(g).get(jewel, flash);
+        if (scale == 1.0f) 
+        {
+            g.drawImage(sprite, x, y, JEWEL_SIZE, JEWEL_SIZE, null);
+            return;
+        }
+        // Shrink around the cell's center
+        float size = JEWEL_SIZE * scale;
+        float offset = (JEWEL_SIZE - size) / 2;
+        g.drawImage(sprite, Math.round(x + offset), Math.round(y + offset), Math.round(size), Math.round(size), null);
     }
 
-    private Color getJewelColor(JewelType type) 
+    /**
+     * @return the sprites for the current cell size and screen scale, rendering
+     * them again if either changed (e.g. the window moved to a HiDPI screen).
+     */
+    private JewelSprites getSprites(Graphics2D g) 
     {
-        switch (type) 
+        double scale = g.getTransform().getScaleX();
+        if (sprites == null || !sprites.matches(JEWEL_SIZE, scale)) 
         {
-            case RED: return new Color(220, 20, 60);   
-            case GREEN: return new Color(0, 201, 87);  
-            case BLUE: return new Color(30, 144, 255); 
-            case YELLOW: return new Color(255, 215, 0); 
-            case PURPLE: return new Color(148, 0, 211); 
-            case ORANGE: return new Color(255, 140, 0); 
-            case WHITE: return new Color(245, 245, 245); 
-            default: return Color.BLACK;
+            sprites = new JewelSprites(JEWEL_SIZE, scale, getGraphicsConfiguration());
         }
+        return sprites;
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+import java.awt.Point;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * One link of a cascade: the matches found, what they cleared, the points they
+ * scored, how the remaining jewels fell and where the new ones drop in from.
+ * Cells are kept as packed indices in reusable buffers, so a step can be refilled
+ * turn after turn without allocating; the Point getters build views for the GUI.
+ */
+public class CascadeStep {
+
+    private final Board board;
+    private int chain;
+    private final CellSet matches;
+    private final CellSet explosionCenters;
+    private int clearedCount;
+    private int points;
+    private final int[] fallFrom;
+    private final int[] fallTo;
+    private int fallCount;
+    private final int[] spawnFromRow;
+    private final int[] spawnTo;
+    private int spawnCount;
+
+    public CascadeStep(Board board) {
+        this.board = board;
+        this.matches = new CellSet(board.getCellCount());
+        this.explosionCenters = new CellSet(board.getCellCount());
+        this.fallFrom = new int[board.getCellCount()];
+        this.fallTo = new int[board.getCellCount()];
+        this.spawnFromRow = new int[board.getCellCount()];
+        this.spawnTo = new int[board.getCellCount()];
+    }
+
+    boolean isFor(Board board) {
+        return this.board == board;
+    }
+
+    /**
+     * Starts the step over for a new link, taking the board's current matches.
+     */
+    void reset(int chain, CellSet boardMatches) {
+        this.chain = chain;
+        matches.copyFrom(boardMatches);
+        board.findExplosionCenters(matches, explosionCenters);
+        clearedCount = 0;
+        points = 0;
+        fallCount = 0;
+        spawnCount = 0;
+    }
+
+    void setCleared(int clearedCount, int points) {
+        this.clearedCount = clearedCount;
+        this.points = points;
+    }
+
+    void collapse() {
+        fallCount = board.collapseGrid(fallFrom, fallTo);
+        spawnCount = board.getSpawns(spawnFromRow, spawnTo);
+    }
+
+    public int getChain() { return chain; }
+    public int getClearedCount() { return clearedCount; }
+    public int getPoints() { return points; }
+
+    // Packed-cell accessors
+
+    public CellSet getMatchCells() { return matches; }
+    public CellSet getExplosionCells() { return explosionCenters; }
+    public int getFallCount() { return fallCount; }
+    public int getFallFrom(int i) { return fallFrom[i]; }
+    public int getFallTo(int i) { return fallTo[i]; }
+    public int getSpawnCount() { return spawnCount; }
+    /** @return the row new jewel i starts from, counting up from -1 above the board. */
+    public int getSpawnFromRow(int i) { return spawnFromRow[i]; }
+    public int getSpawnTo(int i) { return spawnTo[i]; }
+
+    // Point views
+
+    public Set<Point> getMatches() { return toPoints(matches); }
+    public Set<Point> getExplosionCenters() { return toPoints(explosionCenters); }
+
+    private Set<Point> toPoints(CellSet cells) {
+        Set<Point> points = new HashSet<>();
+        for (int cell = cells.next(0); cell >= 0; cell = cells.next(cell + 1)) {
+            points.add(board.toPoint(cell));
+        }
+        return points;
+    }
+}
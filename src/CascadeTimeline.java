@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cascade resolved all at once by TurnEngine.resolveCascade, kept as a list
+ * of links for the view to play back afterwards. Each link records the board
+ * before its matches cleared, right after (with any new power-ups placed), and
+ * once the columns collapsed and refilled, together with every jewel's fall.
+ * Refilled jewels are recorded as falls from above the board, so a column's
+ * old and new jewels drop together.
+ *
+ * The game itself is already settled when the timeline is built; playing it
+ * back only changes what is drawn.
+ */
+public class CascadeTimeline {
+
+    /**
+     * One link of the cascade.
+     */
+    public static final class Link {
+        private final CascadeStep step;
+        private final byte[] before;
+        private final byte[] cleared;
+        private final byte[] after;
+        // Fall i moves the jewel at row fallFromRow[i] (negative above the board)
+        // down to cell fallTo[i], in the same column.
+        private final int[] fallFromRow;
+        private final int[] fallTo;
+        private final int fallCount;
+
+        Link(Board board, CascadeStep step, byte[] before, byte[] cleared, byte[] after) {
+            this.step = step;
+            this.before = before;
+            this.cleared = cleared;
+            this.after = after;
+
+            fallFromRow = new int[step.getFallCount() + step.getSpawnCount()];
+            fallTo = new int[fallFromRow.length];
+            int count = 0;
+            for (int i = 0; i < step.getFallCount(); i++) {
+                fallFromRow[count] = board.rowOf(step.getFallFrom(i));
+                fallTo[count++] = step.getFallTo(i);
+            }
+            for (int i = 0; i < step.getSpawnCount(); i++) {
+                fallFromRow[count] = step.getSpawnFromRow(i);
+                fallTo[count++] = step.getSpawnTo(i);
+            }
+            fallCount = count;
+        }
+
+        public int getChain() { return step.getChain(); }
+        public int getPoints() { return step.getPoints(); }
+        public int getClearedCount() { return step.getClearedCount(); }
+        public CellSet getMatches() { return step.getMatchCells(); }
+        public CellSet getExplosionCenters() { return step.getExplosionCells(); }
+
+        // Jewel codes of a cell at the three points of the link
+
+        public int codeBefore(int cell) { return before[cell]; }
+        public int codeCleared(int cell) { return cleared[cell]; }
+        public int codeAfter(int cell) { return after[cell]; }
+
+        /** @return true if the link removed the cell's jewel. */
+        public boolean isCleared(int cell) {
+            return before[cell] != Jewel.EMPTY_CODE && cleared[cell] == Jewel.EMPTY_CODE;
+        }
+
+        public int getFallCount() { return fallCount; }
+        public int getFallFromRow(int i) { return fallFromRow[i]; }
+        public int getFallTo(int i) { return fallTo[i]; }
+    }
+
+    private final int size;
+    private final List<Link> links = new ArrayList<>();
+    private final CellSet touched;
+    private boolean gameOver;
+
+    CascadeTimeline(Board board) {
+        this.size = board.getSize();
+        this.touched = new CellSet(board.getCellCount());
+    }
+
+    void add(Link link) {
+        links.add(link);
+        for (int cell = 0; cell < size * size; cell++) {
+            if (link.codeBefore(cell) != link.codeCleared(cell)) touched.add(cell);
+        }
+        for (int i = 0; i < link.getFallCount(); i++) {
+            int to = link.getFallTo(i);
+            touched.add(to);
+            int fromRow = link.getFallFromRow(i);
+            if (fromRow >= 0) touched.add(fromRow * size + to % size);
+        }
+    }
+
+    void setGameOver(boolean gameOver) {
+        this.gameOver = gameOver;
+    }
+
+    public List<Link> getLinks() { return Collections.unmodifiableList(links); }
+    public int getChainDepth() { return links.size(); }
+    public int getSize() { return size; }
+    /** @return every cell that changes or has a jewel moving through it. */
+    public CellSet getTouchedCells() { return touched; }
+    public boolean isGameOver() { return gameOver; }
+
+    public boolean hasExplosions() {
+        for (Link link : links) {
+            if (!link.getExplosionCenters().isEmpty()) return true;
+        }
+        return false;
+    }
+
+    public int getPoints() {
+        int points = 0;
+        for (Link link : links) points += link.getPoints();
+        return points;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+/**
+ * A reusable set of packed cell indices (row * columns + col) stored as a bitset.
+ * Meant to be allocated once and refilled, so hot paths can work with sets of
+ * cells without creating Point objects or collections.
+ */
+public class CellSet {
+
+    private final long[] words;
+    private final int capacity;
+
+    public CellSet(int capacity) {
+        this.capacity = capacity;
+        this.words = new long[(capacity + 63) >>> 6];
+    }
+
+    public int capacity() { return capacity; }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    public void add(int cell) {
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    public void remove(int cell) {
+        words[cell >>> 6] &= ~(1L << cell);
+    }
+
+    public boolean contains(int cell) {
+        return (words[cell >>> 6] & (1L << cell)) != 0L;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0L) return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        int size = 0;
+        for (long word : words) size += Long.bitCount(word);
+        return size;
+    }
+
+    /**
+     * @return the first cell at or after fromCell, or -1 if there is none.
+     * Iterate with: for (int c = set.next(0); c >= 0; c = set.next(c + 1))
+     */
+    public int next(int fromCell) {
+        if (fromCell >= capacity) return -1;
+        int w = fromCell >>> 6;
+        long word = words[w] & (-1L << fromCell);
+        while (true) {
+            if (word != 0L) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    public void copyFrom(CellSet other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    public void or(CellSet other) {
+        for (int i = 0; i < words.length; i++) words[i] |= other.words[i];
+    }
+
+    public void and(CellSet other) {
+        for (int i = 0; i < words.length; i++) words[i] &= other.words[i];
+    }
+
+    public void andNot(CellSet other) {
+        for (int i = 0; i < words.length; i++) words[i] &= ~other.words[i];
+    }
+
+    // Word access, for exchanging cells with bitboard masks.
+
+    public long getWord(int index) { return words[index]; }
+    public void setWord(int index, long word) { words[index] = word; }
+}
@@ -0,0 +1,9 @@
+/**
+ * What happens when a cascade settles on a board with no legal swap.
+ */
+public enum DeadBoardRule {
+    /** The game is over. */
+    END_GAME,
+    /** The jewels on the board are shuffled into a playable arrangement. */
+    SHUFFLE
+}
@@ -6,15 +6,34 @@ public class Game {
 
     private Board board;
     private GameMode mode;
+    private long seed;
     private int score;
     private int timerSeconds;
     private int movesLeft;
     private boolean isPaused;
     private boolean isGameOver;
+    private DeadBoardRule deadBoardRule = DeadBoardRule.END_GAME;
 
     public Game(GameMode mode) {
+        this(mode, GameRandom.randomSeed());
+    }
+
+    /**
+     * Starts a reproducible game: the same mode, seed and moves always give the
+     * same boards and score.
+     */
+    public Game(GameMode mode, long seed) {
+        this(mode, new Board(new GameRandom(seed)));
+        this.seed = seed;
+        board.populateBoard();
+    }
+
+    /**
+     * Starts a game on an already filled board, e.g. a fixture or a restored position.
+     */
+    public Game(GameMode mode, Board board) {
         this.mode = mode;
-        this.board = new Board();
+        this.board = board;
         this.score = 0;
         this.isPaused = false;
         this.isGameOver = false;
@@ -24,9 +43,27 @@ public class Game {
         } else {
             this.movesLeft = 50;
         }
-        board.populateBoard();
     }
     
+    /**
+     * Rebuilds a saved game around its restored board; see GameCodec.
+     * @param remaining seconds left in TIMED mode, moves left in MOVES mode
+     */
+    static Game restore(GameMode mode, Board board, long seed, int score, int remaining,
+                        boolean paused, boolean gameOver) {
+        Game game = new Game(mode, board);
+        game.seed = seed;
+        game.score = score;
+        if (mode == GameMode.TIMED) {
+            game.timerSeconds = remaining;
+        } else {
+            game.movesLeft = remaining;
+        }
+        game.isPaused = paused;
+        game.isGameOver = gameOver;
+        return game;
+    }
+
     public void decrementTimer() {
         if (!isPaused && timerSeconds > 0) {
             timerSeconds--;
@@ -47,6 +84,12 @@ public class Game {
         }
     }
 
+    /**
+     * Chooses what a board with no legal swap left does to the game; the rule
+     * is part of what makes a seed reproducible, so set it before the first move.
+     */
+    public void setDeadBoardRule(DeadBoardRule rule) { this.deadBoardRule = rule; }
+
     public void addToScore(int points) { this.score += points; }
     public void togglePause() { this.isPaused = !this.isPaused; }
     public void endGame() { this.isGameOver = true; }
@@ -54,9 +97,13 @@ public class Game {
     // Getters
     public Board getBoard() { return board; }
     public GameMode getMode() { return mode; }
+    public long getSeed() { return seed; }
     public int getScore() { return score; }
+    public int getTimerSeconds() { return timerSeconds; }
+    public int getMovesLeft() { return movesLeft; }
     public boolean isPaused() { return isPaused; }
     public boolean isGameOver() { return isGameOver; }
+    public DeadBoardRule getDeadBoardRule() { return deadBoardRule; }
 
     public String getStatusString() {
         if (mode == GameMode.TIMED) {
@@ -0,0 +1,122 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A blocking client for GameServer. Not thread-safe: use one client per thread.
+ * Each call sends one request and waits for its response; the state and
+ * points of the last successful reply are kept until the next call.
+ */
+public class GameClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private ServerProtocol.State state;
+    private int points;
+    private int chainDepth;
+
+    private GameClient(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    public static GameClient connect(SocketAddress address) throws IOException {
+        SocketChannel channel;
+        if (address instanceof UnixDomainSocketAddress) {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        channel.connect(address);
+        return new GameClient(channel);
+    }
+
+    /**
+     * @param seed 0 for a random game
+     * @return the new session's id
+     */
+    public int newGame(GameMode mode, long seed) throws IOException {
+        out.writeByte(ServerProtocol.NEW_GAME);
+        out.writeByte(mode.ordinal());
+        out.writeLong(seed);
+        out.flush();
+        expectOk();
+        int session = in.readInt();
+        state = ServerProtocol.readState(in);
+        return session;
+    }
+
+    /**
+     * Swaps two adjacent cells, numbered row * size + col.
+     * @return ServerProtocol.OK, or why the swap was refused
+     */
+    public int swap(int session, int fromCell, int toCell) throws IOException {
+        out.writeByte(ServerProtocol.SWAP);
+        out.writeInt(session);
+        out.writeShort(fromCell);
+        out.writeShort(toCell);
+        out.flush();
+        int status = in.readUnsignedByte();
+        if (status == ServerProtocol.OK) {
+            points = in.readInt();
+            chainDepth = in.readUnsignedByte();
+            state = ServerProtocol.readState(in);
+        }
+        return status;
+    }
+
+    public ServerProtocol.State state(int session) throws IOException {
+        return request(ServerProtocol.STATE, session);
+    }
+
+    /**
+     * Pauses the game, or resumes it if paused.
+     */
+    public ServerProtocol.State pause(int session) throws IOException {
+        return request(ServerProtocol.PAUSE, session);
+    }
+
+    public void closeGame(int session) throws IOException {
+        out.writeByte(ServerProtocol.CLOSE);
+        out.writeInt(session);
+        out.flush();
+        expectOk();
+    }
+
+    private ServerProtocol.State request(byte op, int session) throws IOException {
+        out.writeByte(op);
+        out.writeInt(session);
+        out.flush();
+        expectOk();
+        state = ServerProtocol.readState(in);
+        return state;
+    }
+
+    private void expectOk() throws IOException {
+        int status = in.readUnsignedByte();
+        if (status != ServerProtocol.OK) throw new IOException("Server refused the request: status " + status);
+    }
+
+    /** @return the state sent with the last successful reply. */
+    public ServerProtocol.State getState() { return state; }
+    /** @return the points scored by the last accepted swap. */
+    public int getPoints() { return points; }
+    public int getChainDepth() { return chainDepth; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,125 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary form of a settled Game, for parking sessions and surviving
+ * restarts without object serialization. An 8x8 game takes 82 bytes:
+ *
+ *   version(1) mode(1) flags(1) score(4) remaining(4) seed(8)
+ *   random: seed(8) gamma(8) colorBuffer(4) colorsBuffered(1)
+ *   size(2) cells: one 5-bit jewel code per cell, row by row, packed MSB first
+ *
+ * remaining is the seconds left in TIMED mode and the moves left in MOVES mode.
+ * flags mark a paused game, a finished one and one that shuffles dead boards.
+ * The random stream's full state is kept, so a restored game goes on to draw
+ * exactly the refills the original would have.
+ *
+ * A game must be saved between moves, not in the middle of a cascade.
+ */
+public final class GameCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 1 + 1 + 1 + 4 + 4 + 8 + 8 + 8 + 4 + 1 + 2;
+    private static final int BITS_PER_CELL = 5;
+    private static final int PAUSED = 1;
+    private static final int OVER = 2;
+    private static final int SHUFFLES = 4;
+
+    static {
+        if (Jewel.CODE_COUNT > 1 << BITS_PER_CELL) throw new AssertionError("Jewel codes need more than 5 bits");
+    }
+
+    private GameCodec() {}
+
+    /**
+     * @return the encoded size of a game on a board with the given cells per side.
+     */
+    public static int encodedSize(int boardSize) {
+        return HEADER_BYTES + (boardSize * boardSize * BITS_PER_CELL + 7) / 8;
+    }
+
+    public static byte[] encode(Game game) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(game.getBoard().getSize()));
+        encode(game, out);
+        return out.array();
+    }
+
+    /**
+     * Writes the game at the buffer's position and advances it by encodedSize.
+     */
+    public static void encode(Game game, ByteBuffer out) {
+        Board board = game.getBoard();
+        GameRandom random = board.getRandom();
+        out.put((byte) VERSION);
+        out.put((byte) game.getMode().ordinal());
+        out.put((byte) ((game.isPaused() ? PAUSED : 0) | (game.isGameOver() ? OVER : 0)
+                | (game.getDeadBoardRule() == DeadBoardRule.SHUFFLE ? SHUFFLES : 0)));
+        out.putInt(game.getScore());
+        out.putInt(game.getMode() == GameMode.TIMED ? game.getTimerSeconds() : game.getMovesLeft());
+        out.putLong(game.getSeed());
+        out.putLong(random.getSeed());
+        out.putLong(random.getGamma());
+        out.putInt(random.getColorBuffer());
+        out.put((byte) random.getColorsBuffered());
+        out.putShort((short) board.getSize());
+
+        // Cells go through a 64-bit accumulator, flushed a byte at a time
+        long bits = 0;
+        int bitCount = 0;
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            Jewel jewel = board.getJewel(cell);
+            bits = bits << BITS_PER_CELL | (jewel == null ? Jewel.EMPTY_CODE : jewel.getCode());
+            bitCount += BITS_PER_CELL;
+            while (bitCount >= 8) {
+                bitCount -= 8;
+                out.put((byte) (bits >>> bitCount));
+            }
+        }
+        if (bitCount > 0) out.put((byte) (bits << (8 - bitCount)));
+    }
+
+    public static Game decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a game at the buffer's position and advances past it.
+     * @throws IllegalArgumentException if the bytes are not a valid game
+     */
+    public static Game decode(ByteBuffer in) {
+        try {
+            int version = in.get() & 0xff;
+            if (version != VERSION) throw new IllegalArgumentException("Unsupported game version " + version);
+            int modeOrdinal = in.get() & 0xff;
+            if (modeOrdinal >= GameMode.values().length) throw new IllegalArgumentException("Bad game mode " + modeOrdinal);
+            GameMode mode = GameMode.values()[modeOrdinal];
+            int flags = in.get();
+            int score = in.getInt();
+            int remaining = in.getInt();
+            long seed = in.getLong();
+            GameRandom random = GameRandom.restore(in.getLong(), in.getLong(), in.getInt(), in.get() & 0xff);
+            int size = in.getShort() & 0xffff;
+            if (size < Board.MIN_SIZE || size > Board.MAX_SIZE) throw new IllegalArgumentException("Bad board size " + size);
+
+            Board board = new Board(size, random);
+            byte[] codes = new byte[size * size];
+            long bits = 0;
+            int bitCount = 0;
+            for (int cell = 0; cell < codes.length; cell++) {
+                while (bitCount < BITS_PER_CELL) {
+                    bits = bits << 8 | (in.get() & 0xff);
+                    bitCount += 8;
+                }
+                bitCount -= BITS_PER_CELL;
+                codes[cell] = (byte) ((bits >>> bitCount) & ((1 << BITS_PER_CELL) - 1));
+            }
+            board.loadCodes(codes);
+            Game game = Game.restore(mode, board, seed, score, remaining, (flags & PAUSED) != 0, (flags & OVER) != 0);
+            if ((flags & SHUFFLES) != 0) game.setDeadBoardRule(DeadBoardRule.SHUFFLE);
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated game", e);
+        }
+    }
+}
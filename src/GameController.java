@@ -1,76 +1,190 @@
 import java.awt.Point;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 /**
- * GameController.java 
+ * GameController.java
  * Manages the game flow, state, and interaction between the model and view.
+ *
+ * The Game is owned by a single game-logic thread: every move, cascade step,
+ * timer tick and move check runs there, so heavy work never holds up input or
+ * painting. Each task publishes a GameSnapshot, which the event thread installs
+ * before acting on the result; the view only ever paints snapshots. All other
+ * fields (selection, animation state, the hint) belong to the event thread.
  */
 public class GameController {
 
-    private Game game;
     private GameGUI gui;
     private Point selectedJewel;
     private boolean isAnimating = false;
     private Timer gameTimer;
+    private final Solver solver = new Solver();
+    private Move hint;
+    // Resolve cascades up front and play them back with overlapping phases,
+    // rather than animating each step before resolving the next.
+    private boolean overlappedCascades = !Boolean.getBoolean("crystalyze.stepCascades");
+    // Reshuffle a board with no moves left instead of ending the game.
+    private static final DeadBoardRule DEAD_BOARD_RULE = Boolean.getBoolean("crystalyze.shuffleDeadBoards")
+            ? DeadBoardRule.SHUFFLE : DeadBoardRule.END_GAME;
+
+    // Event thread: the latest snapshot, and which game it belongs to.
+    private GameSnapshot snapshot;
+    private int generation;
+    private boolean gameOverShown;
+
+    // Game-logic thread only.
+    private final ExecutorService logic = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "crystalyze-logic");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Game game;
+    private int gameGeneration;
+    private ReplayRecorder replay;
+    private Leaderboard leaderboard;
+    private boolean leaderboardFailed;
+
+    // Set crystalyze.replays to a directory to record every game there
+    private static final Path REPLAY_DIRECTORY = System.getProperty("crystalyze.replays") == null
+            ? null : Paths.get(System.getProperty("crystalyze.replays"));
+
+    private static final Path LEADERBOARD_DIRECTORY = Paths.get(System.getProperty("crystalyze.leaderboard",
+            Paths.get(System.getProperty("user.home"), ".crystalyze", "leaderboard").toString()));
+    private static final String PLAYER = System.getProperty("crystalyze.player", System.getProperty("user.name", "player"));
+    private static final long RANK_WAIT_MILLIS = 500;
+    private static final int STANDINGS_TOP = 5;
+
+    private static final long HINT_BUDGET_MILLIS = 300;
 
     public GameController(GameGUI gui) {
         this.gui = gui;
     }
 
     public void startGame(GameMode mode) {
-        this.game = new Game(mode);
+        int started = ++generation;
+        snapshot = null;
+        gameOverShown = false;
+        gui.getBoardPanel().skipTimeline();
         this.selectedJewel = null;
         this.isAnimating = false;
-        
+        this.hint = null;
+
         if (gameTimer != null) gameTimer.stop();
-        
-        if (mode == GameMode.TIMED) {
-            gameTimer = new Timer(1000, e -> updateTimer());
-            gameTimer.start();
-        }
-        
-        updateUI();
-        gui.setPauseButtonText(false);
-        gui.updateView();
+
+        logic.execute(() -> {
+            if (game != null) finishReplay(game);
+            game = new Game(mode);
+            game.setDeadBoardRule(DEAD_BOARD_RULE);
+            gameGeneration = started;
+            startReplay(game);
+            GameSnapshot created = GameSnapshot.of(game);
+            SwingUtilities.invokeLater(() -> {
+                if (generation != started) return;
+                snapshot = created;
+                if (mode == GameMode.TIMED) {
+                    gameTimer = new Timer(1000, e -> updateTimer());
+                    gameTimer.start();
+                }
+                updateUI();
+                gui.setPauseButtonText(false);
+                gui.updateView();
+            });
+        });
     }
-    
+
     private void updateTimer() {
         if(isPaused()) return;
-        game.decrementTimer();
-        updateUI();
-        if (game.isGameOver()) {
-            endGame();
-        }
+        onGame(game -> {
+            game.decrementTimer();
+            return null;
+        }, ignored -> {
+            updateUI();
+            // A swap or cascade still under way ends the game once it has
+            // settled, so the final score includes all of its points
+            if (snapshot.isGameOver() && !isAnimating) {
+                endGame();
+            }
+        });
     }
-    
+
     private void endGame() {
         if(gameTimer != null) gameTimer.stop();
-        game.endGame();
-        gui.showGameOverDialog(game.getScore());
+        if (gameOverShown) return;
+        gameOverShown = true;
+        onGame(game -> {
+            game.endGame();
+            finishReplay(game);
+            return submitScore(game);
+        }, standings -> gui.showGameOverDialog(snapshot.getScore(), standings));
     }
 
     public void quitCurrentGame() {
         if (gameTimer != null) gameTimer.stop();
-        if (game != null) game.endGame();
+        generation++;
+        logic.execute(() -> {
+            if (game != null) {
+                game.endGame();
+                finishReplay(game);
+            }
+            game = null;
+        });
         isAnimating = false;
         selectedJewel = null;
-        game = null;
+        snapshot = null;
+        gui.getBoardPanel().skipTimeline();
         updateUI();
         gui.updateView();
     }
 
+    /**
+     * Runs work against the current game on the logic thread, then installs
+     * the resulting snapshot and hands the work's result to then on the event
+     * thread. Dropped if another game was started or the game quit meanwhile.
+     */
+    private <T> void onGame(Function<Game, T> work, Consumer<T> then) {
+        int submitted = generation;
+        long queued = System.nanoTime();
+        logic.execute(() -> {
+            long start = System.nanoTime();
+            Metrics.LOGIC_QUEUE.record(start - queued);
+            if (game == null || gameGeneration != submitted) return;
+            T result = work.apply(game);
+            GameSnapshot published = GameSnapshot.of(game);
+            Metrics.LOGIC_TASK.recordSince(start);
+            SwingUtilities.invokeLater(() -> {
+                if (generation != submitted) return;
+                snapshot = published;
+                then.accept(result);
+            });
+        });
+    }
+
     public void jewelClicked(int row, int col) {
-        if (isAnimating || isPaused()) return;
+        if (isPaused()) return;
+        // A click lands a cascade that is still playing back, then counts as usual
+        if (isAnimating && !gui.getBoardPanel().skipTimeline()) return;
+        if (!isGameActive()) return;
+        hint = null;
 
         if (selectedJewel == null) {
             selectedJewel = new Point(row, col);
         } else {
             Point secondJewelPos = new Point(row, col);
-            if (!selectedJewel.equals(secondJewelPos) && getBoard().isAdjacent(selectedJewel, secondJewelPos)) {
+            if (isAdjacent(selectedJewel, secondJewelPos)) {
                 isAnimating = true;
                 attemptSwap(selectedJewel, secondJewelPos);
             }
@@ -79,108 +193,287 @@ public class GameController {
         gui.updateView();
     }
 
+    private static boolean isAdjacent(Point p1, Point p2) {
+        return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y) == 1;
+    }
+
     private void attemptSwap(Point p1, Point p2) {
         gui.getBoardPanel().animateSwap(p1, p2, () -> {
-            boolean isValidSwap = getBoard().checkAndPerformSwap(p1, p2);
-            
-            if (isValidSwap) {
-                if (game.getMode() == GameMode.MOVES) {
-                    game.decrementMoves();
-                }
-                processMatches();
+            if (overlappedCascades) {
+                // The whole turn is resolved before the result comes back
+                onGame(game -> {
+                    if (!swap(game, p1, p2)) return null;
+                    CascadeTimeline timeline = TurnEngine.resolveCascade(game);
+                    replaySettled(game);
+                    return timeline;
+                }, timeline -> {
+                    if (timeline != null) {
+                        playCascade(timeline);
+                    } else {
+                        swapBack(p1, p2);
+                    }
+                });
             } else {
-                gui.getBoardPanel().animateSwap(p2, p1, () -> {
-                    isAnimating = false;
-                    gui.updateView();
+                onGame(game -> swap(game, p1, p2), isValidSwap -> {
+                    if (isValidSwap) {
+                        processMatches(1);
+                    } else {
+                        swapBack(p1, p2);
+                    }
                 });
             }
         });
     }
-    
-    private void processMatches() {
-        final AtomicInteger chain = new AtomicInteger(1);
-        
-        Runnable processNextChain = new Runnable() {
-            @Override
-            public void run() {
-                if (game == null) {
-                    isAnimating = false;
-                    return;
-                }
-                
-                Set<Point> matches = getBoard().findAllMatches();
-                
-                // If the board is stable (no more matches)
-                if (matches.isEmpty()) {
-                    // Now check for game over conditions
-                    if (game.isGameOver() || !getBoard().hasValidMoves()) {
-                        SwingUtilities.invokeLater(() -> endGame());
-                    }
-                    isAnimating = false;
-                    return;
-                }
 
-                // If there are matches, continue the animation chain
-                gui.getBoardPanel().animateHighlight(matches, () -> {
-                    Set<Point> explosionCenters = getBoard().getExplosionCenters(matches);
-                    if (!explosionCenters.isEmpty()) {
-                        gui.getBoardPanel().animateExplosion(explosionCenters, () -> {
-                            continueChain(chain, this);
-                        });
-                    } else {
-                        gui.getBoardPanel().animateDestruction(matches, () -> {
-                            continueChain(chain, this);
-                        });
-                    }
+    /**
+     * Logic thread: performs a swap if the game is still on and the swap legal.
+     * @return true if the swap was kept
+     */
+    private boolean swap(Game game, Point p1, Point p2) {
+        // The clock may have run out since the click
+        if (game.isGameOver() || !TurnEngine.trySwap(game, p1, p2)) return false;
+        if (replay != null) {
+            Board board = game.getBoard();
+            replay.swapped(game, board.cellOf(p1.x, p1.y), board.cellOf(p2.x, p2.y));
+        }
+        return true;
+    }
+
+    private void swapBack(Point p1, Point p2) {
+        gui.getBoardPanel().animateSwap(p2, p1, () -> {
+            isAnimating = false;
+            gui.updateView();
+            // The clock may have run out during the swap
+            if (snapshot.isGameOver()) endGame();
+        });
+    }
+
+    /**
+     * Plays back a cascade already resolved on the logic thread.
+     */
+    private void playCascade(CascadeTimeline timeline) {
+        int played = generation;
+        gui.getBoardPanel().playTimeline(timeline, () -> {
+            if (generation != played) return;
+            isAnimating = false;
+            updateUI();
+            gui.updateView();
+            if (snapshot.isGameOver()) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == played) endGame();
                 });
             }
-        };
+        });
+    }
+
+    /**
+     * One step of a cascade in step mode: what the view animates next, taken
+     * on the logic thread.
+     */
+    private static final class StepView {
+        final Set<Point> matches;
+        final Set<Point> explosionCenters;
+        final CascadeStep step;
+
+        StepView(CascadeStep step) {
+            this.step = step;
+            this.matches = step.getMatches();
+            this.explosionCenters = step.getExplosionCenters();
+        }
+    }
+
+    private void processMatches(int chain) {
+        onGame(game -> {
+            CascadeStep step = TurnEngine.findStep(game, chain);
+            if (step == null) {
+                // The board is stable: check for game over conditions
+                TurnEngine.settle(game);
+                replaySettled(game);
+                return null;
+            }
+            return new StepView(step);
+        }, view -> {
+            if (view == null) {
+                isAnimating = false;
+                gui.updateView();
+                if (snapshot.isGameOver()) endGame();
+                return;
+            }
 
-        processNextChain.run();
+            // If there are matches, continue the animation chain
+            gui.getBoardPanel().animateHighlight(view.matches, () -> {
+                if (!view.explosionCenters.isEmpty()) {
+                    gui.getBoardPanel().animateExplosion(view.explosionCenters, () -> continueChain(view.step, chain));
+                } else {
+                    gui.getBoardPanel().animateDestruction(view.matches, () -> continueChain(view.step, chain));
+                }
+            });
+        });
     }
-    
-    private void continueChain(AtomicInteger chain, Runnable next) {
-        game.addToScore(getBoard().clearAndCreatePowerUps() * 10 * chain.get());
-        updateUIAndBoard();
 
-        Map<Point, Point> fallMap = getBoard().collapseGrid();
-        gui.getBoardPanel().animateFall(fallMap, () -> {
-            getBoard().refillGrid();
+    private void continueChain(CascadeStep step, int chain) {
+        onGame(game -> {
+            GameEvents.CascadeStepEvent event = new GameEvents.CascadeStepEvent();
+            event.begin();
+            TurnEngine.clear(game, step);
+            TurnEngine.collapse(game, step);
+            TurnEngine.refill(game);
+            event.end();
+            if (event.shouldCommit()) {
+                event.chain = chain;
+                event.cleared = step.getClearedCount();
+                event.points = step.getPoints();
+                event.commit();
+            }
+            return step;
+        }, collapsed -> {
+            // The refill is in the snapshot already, and drops in with the fall
             updateUIAndBoard();
-            
-            chain.incrementAndGet();
-            SwingUtilities.invokeLater(next);
+            gui.getBoardPanel().animateFall(collapsed, () -> processMatches(chain + 1));
         });
     }
-    
+
+    // Logic thread: a replay that cannot be written is dropped, not the game
+    private void startReplay(Game game) {
+        if (REPLAY_DIRECTORY == null) return;
+        Path file = REPLAY_DIRECTORY.resolve(String.format("%s-%016x.replay",
+                game.getMode().name().toLowerCase(), game.getSeed()));
+        try {
+            Files.createDirectories(REPLAY_DIRECTORY);
+            replay = new ReplayRecorder(file, game, ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+        } catch (IOException e) {
+            System.err.println("Not recording a replay: " + e);
+        }
+    }
+
+    private void replaySettled(Game game) {
+        if (replay == null) return;
+        try {
+            replay.settled(game);
+        } catch (IOException e) {
+            System.err.println("Replay recording stopped: " + e);
+            closeReplay();
+        }
+    }
+
+    private void finishReplay(Game game) {
+        if (replay == null) return;
+        try {
+            replay.finish(game);
+        } catch (IOException e) {
+            System.err.println("Replay could not be finished: " + e);
+        }
+        closeReplay();
+    }
+
+    private void closeReplay() {
+        try {
+            replay.close();
+        } catch (IOException e) {
+            // Nothing more to lose
+        }
+        replay = null;
+    }
+
+    // Logic thread: a leaderboard that cannot be opened or written is skipped
+    private Leaderboard leaderboard() {
+        if (leaderboard == null && !leaderboardFailed) {
+            try {
+                leaderboard = new Leaderboard(LEADERBOARD_DIRECTORY);
+            } catch (IOException e) {
+                System.err.println("No leaderboard: " + e);
+                leaderboardFailed = true;
+            }
+        }
+        return leaderboard;
+    }
+
+    /**
+     * Submits the finished game's score and waits briefly for its rank.
+     * @return the standings to show with the final score, or null without a leaderboard
+     */
+    private String submitScore(Game game) {
+        Leaderboard board = leaderboard();
+        if (board == null) return null;
+        // Only a settled board has its final score; a cascade would still add points
+        if (!game.getBoard().findMatches().isEmpty()) {
+            System.err.println("Score not saved: the game ended mid-cascade");
+            return null;
+        }
+        GameMode mode = game.getMode();
+        try {
+            int rank = board.submit(mode, PLAYER, game.getScore(), game.getSeed())
+                    .get(RANK_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            StringBuilder standings = new StringBuilder();
+            standings.append(String.format("Rank %d of %d%n", rank, board.size(mode)));
+            Leaderboard.Entry best = board.best(mode, PLAYER);
+            if (best != null) standings.append(String.format("Your best: %d (rank %d)%n", best.getScore(), best.getRank()));
+            List<Leaderboard.Entry> top = board.top(mode, STANDINGS_TOP);
+            standings.append("\nTop scores:");
+            for (Leaderboard.Entry entry : top) standings.append('\n').append(entry);
+            return standings.toString();
+        } catch (TimeoutException e) {
+            return "Score saved; its rank is still being worked out.";
+        } catch (IOException | ExecutionException | IllegalArgumentException e) {
+            System.err.println("Score not saved: " + e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     private void updateUIAndBoard() {
-        SwingUtilities.invokeLater(() -> {
-            updateUI();
-            gui.updateView();
-        });
+        updateUI();
+        gui.updateView();
     }
-    
+
+    /**
+     * Searches for the best swap off the event thread and shows it once found,
+     * unless the board changed in the meantime.
+     */
+    public void showHint() {
+        if (!isGameActive() || isAnimating || isPaused()) return;
+        int hinted = generation;
+        onGame(game -> {
+            Board copy = new Board();
+            copy.copyFrom(game.getBoard());
+            return copy;
+        }, copy -> CompletableFuture.supplyAsync(() -> solver.solve(copy, HINT_BUDGET_MILLIS))
+                .thenAccept(result -> SwingUtilities.invokeLater(() -> {
+                    if (generation == hinted && !isAnimating && result.getMove() != null
+                            && snapshot.getHash() == copy.getHash()) {
+                        hint = result.getMove();
+                        gui.updateView();
+                    }
+                })));
+    }
+
     public void togglePause() {
-        if (game == null || game.isGameOver()) return;
-        game.togglePause();
-        gui.setPauseButtonText(game.isPaused());
+        if (snapshot == null || snapshot.isGameOver()) return;
+        onGame(game -> {
+            game.togglePause();
+            return null;
+        }, ignored -> gui.setPauseButtonText(snapshot.isPaused()));
     }
-    
+
     private void updateUI() {
-        if (game == null) {
+        if (snapshot == null) {
             gui.updateScore(0);
             gui.updateStatus("--", null);
             return;
         }
-        gui.updateScore(game.getScore());
-        gui.updateStatus(game.getStatusString(), game.getMode());
+        gui.updateScore(snapshot.getScore());
+        gui.updateStatus(snapshot.getStatusString(), snapshot.getMode());
     }
-    
-    // Getters
-    public Board getBoard() { return game != null ? game.getBoard() : null; }
+
+    // Getters, for the event thread
+    public GameSnapshot getSnapshot() { return snapshot; }
     public Point getSelectedJewel() { return selectedJewel; }
-    public boolean isGameActive() { return game != null && !game.isGameOver(); }
-    public boolean isPaused() { return game != null && game.isPaused(); }
+    public Move getHint() { return hint; }
+    public boolean isGameActive() { return snapshot != null && !snapshot.isGameOver(); }
+    public boolean isPaused() { return snapshot != null && snapshot.isPaused(); }
     public boolean isAnimating() { return isAnimating; }
+    public boolean isOverlappedCascades() { return overlappedCascades; }
+    public void setOverlappedCascades(boolean overlappedCascades) { this.overlappedCascades = overlappedCascades; }
 }
-
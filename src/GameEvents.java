@@ -0,0 +1,106 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for the gameplay and rendering hot paths, so a
+ * stutter report can come with a recording:
+ *
+ *   java -XX:StartFlightRecording:filename=crystalyze.jfr -jar crystalyze.jar
+ *   jfr print --categories Crystalyze crystalyze.jfr
+ *
+ * Events cost next to nothing while no recording is running. Match scans and
+ * move checks run millions of times a second during a hint search, so by
+ * default only scans slower than their threshold are kept; lower it in the
+ * recording settings (e.g. crystalyze.MatchScan#threshold=0 ns) to see every call.
+ */
+public final class GameEvents {
+
+    private GameEvents() {}
+
+    @Name("crystalyze.Turn")
+    @Label("Turn")
+    @Category("Crystalyze")
+    @Description("A move resolved through its whole cascade")
+    @StackTrace(false)
+    public static final class TurnEvent extends Event {
+        @Label("Chain Depth")
+        public int chainDepth;
+        @Label("Cells Cleared")
+        public int cleared;
+        @Label("Points")
+        public int points;
+        @Label("Game Over")
+        public boolean gameOver;
+    }
+
+    @Name("crystalyze.CascadeStep")
+    @Label("Cascade Step")
+    @Category("Crystalyze")
+    @Description("One link of a cascade: clear, collapse and refill")
+    @StackTrace(false)
+    public static final class CascadeStepEvent extends Event {
+        @Label("Chain")
+        public int chain;
+        @Label("Cells Cleared")
+        public int cleared;
+        @Label("Points")
+        public int points;
+    }
+
+    @Name("crystalyze.MatchScan")
+    @Label("Match Scan")
+    @Category("Crystalyze")
+    @Description("A search of the board for lines of three or more")
+    @StackTrace(false)
+    @Threshold("20 us")
+    public static final class MatchScanEvent extends Event {
+        @Label("Board Size")
+        public int size;
+        @Label("Cells Matched")
+        public int matched;
+    }
+
+    @Name("crystalyze.MoveCheck")
+    @Label("Move Check")
+    @Category("Crystalyze")
+    @Description("A check of whether the board has any legal swap left")
+    @StackTrace(false)
+    @Threshold("20 us")
+    public static final class MoveCheckEvent extends Event {
+        @Label("Board Size")
+        public int size;
+        @Label("Has Moves")
+        public boolean hasMoves;
+    }
+
+    @Name("crystalyze.BoardGeneration")
+    @Label("Board Generation")
+    @Category("Crystalyze")
+    @Description("A new board filled by populateBoard")
+    @StackTrace(false)
+    public static final class BoardGenerationEvent extends Event {
+        @Label("Board Size")
+        public int size;
+        @Label("Attempts")
+        @Description("Boards generated to get a playable one; the generator is single-pass, so always 1")
+        public int attempts;
+    }
+
+    @Name("crystalyze.Paint")
+    @Label("Board Paint")
+    @Category({"Crystalyze", "Rendering"})
+    @Description("One BoardPanel.paintComponent call")
+    @StackTrace(false)
+    public static final class PaintEvent extends Event {
+        @Label("Dirty Area")
+        @Description("Pixels inside the clip, in user space")
+        public long pixels;
+        @Label("Animating")
+        public boolean animating;
+    }
+}
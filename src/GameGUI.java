@@ -63,6 +63,16 @@ public class GameGUI extends JFrame implements ActionListener {
 
         add(mainPanel);
 
+        // Ctrl+M prints the latency histograms, e.g. while chasing a stutter
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke("ctrl M"), "DUMP_METRICS");
+        getRootPane().getActionMap().put("DUMP_METRICS", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Metrics.dump(System.out);
+            }
+        });
+
         pack();
         setLocationRelativeTo(null);
         setVisible(true);
@@ -78,13 +88,15 @@ public class GameGUI extends JFrame implements ActionListener {
     private JPanel createControlPanel() {
         // Create the inner panel with the buttons
         JPanel buttonPanel = new JPanel();
-        buttonPanel.setLayout(new GridLayout(1, 2, 10, 0));
+        buttonPanel.setLayout(new GridLayout(1, 3, 10, 0));
         buttonPanel.setOpaque(false);
 
         pauseButton = createStyledButton("Pause");
+        JButton hintButton = createStyledButton("Hint");
         JButton exitButton = createStyledButton("Exit");
 
         buttonPanel.add(pauseButton);
+        buttonPanel.add(hintButton);
         buttonPanel.add(exitButton);
         
         // Create a wrapper panel with FlowLayout to manage spacing
@@ -103,7 +115,7 @@ public class GameGUI extends JFrame implements ActionListener {
     private JButton createStyledButton(String text) {
         JButton button = new JButton(text);
         button.setFont(new Font("Arial", Font.BOLD, 16));
-        button.setPreferredSize(new Dimension(200, 40)); // Give buttons a fixed size
+        button.setPreferredSize(new Dimension(150, 40)); // Give buttons a fixed size; three fit under the board
         button.setBackground(new Color(100, 100, 100));
         button.setForeground(Color.WHITE);
         button.setFocusPainted(false);
@@ -156,6 +168,9 @@ public class GameGUI extends JFrame implements ActionListener {
             case "RESUME":
                 gameController.togglePause();
                 break;
+            case "HINT":
+                gameController.showHint();
+                break;
             case "EXIT":
                 // Quit the current game and return to the mode selection screen
                 gameController.quitCurrentGame();
@@ -193,8 +208,12 @@ public class GameGUI extends JFrame implements ActionListener {
         return boardPanel;
     }
 
-    public void showGameOverDialog(int finalScore) {
+    /**
+     * @param standings the leaderboard after this game, or null to show only the score
+     */
+    public void showGameOverDialog(int finalScore, String standings) {
         String message = "Game Over!\nYour final score is: " + finalScore;
+        if (standings != null) message += "\n\n" + standings;
         Object[] options = {"Play Again", "Exit"};
         int choice = JOptionPane.showOptionDialog(this, message, "Game Over",
                 JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
@@ -0,0 +1,137 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The random stream of a single game.
+ * Uses the SplitMix64 algorithm of java.util.SplittableRandom, but keeps its
+ * state readable so a game can be saved and replayed exactly from its seed.
+ * Every game owns its stream, so boards on different threads never contend.
+ *
+ * Jewel colors are drawn in batches: one bounded draw of 7^11 yields eleven
+ * independent, exactly uniform colors as its base-7 digits.
+ */
+public class GameRandom implements RandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final JewelType[] TYPES = JewelType.values();
+    private static final int COLORS_PER_DRAW;
+    private static final int COLOR_DRAW_BOUND;
+
+    static {
+        int digits = 0;
+        long bound = 1;
+        while (bound * TYPES.length <= Integer.MAX_VALUE) {
+            bound *= TYPES.length;
+            digits++;
+        }
+        COLORS_PER_DRAW = digits;
+        COLOR_DRAW_BOUND = (int) bound;
+    }
+
+    private long seed;
+    private final long gamma;
+    private int colorBuffer;
+    private int colorsBuffered;
+
+    public GameRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private GameRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return a fresh seed for games that are not meant to be reproduced.
+     */
+    public static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * @return an independent stream, e.g. one per simulated game or per thread.
+     */
+    public GameRandom split() {
+        return new GameRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Restarts this stream from a new seed, keeping its gamma. Lets look-ahead
+     * code replay the same refills for the same position without allocating.
+     */
+    public void reseed(long seed) {
+        this.seed = seed;
+        colorsBuffered = 0;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public JewelType nextJewelType() {
+        if (colorsBuffered == 0) {
+            colorBuffer = nextInt(COLOR_DRAW_BOUND);
+            colorsBuffered = COLORS_PER_DRAW;
+        }
+        int type = colorBuffer % TYPES.length;
+        colorBuffer /= TYPES.length;
+        colorsBuffered--;
+        return TYPES[type];
+    }
+
+    /**
+     * Draws count colors at once, as JewelType ordinals: the same colors, and
+     * the same state after, as count calls to nextJewelType.
+     */
+    public void nextJewelTypes(byte[] types, int count) {
+        int i = 0;
+        while (i < count) {
+            if (colorsBuffered == 0) {
+                colorBuffer = nextInt(COLOR_DRAW_BOUND);
+                colorsBuffered = COLORS_PER_DRAW;
+            }
+            int take = Math.min(colorsBuffered, count - i);
+            int buffer = colorBuffer;
+            for (int end = i + take; i < end; i++) {
+                types[i] = (byte) (buffer % TYPES.length);
+                buffer /= TYPES.length;
+            }
+            colorBuffer = buffer;
+            colorsBuffered -= take;
+        }
+    }
+
+    // --- State, for saving and restoring a game ---
+
+    public long getSeed() { return seed; }
+    public long getGamma() { return gamma; }
+    public int getColorBuffer() { return colorBuffer; }
+    public int getColorsBuffered() { return colorsBuffered; }
+
+    public static GameRandom restore(long seed, long gamma, int colorBuffer, int colorsBuffered) {
+        GameRandom random = new GameRandom(seed, gamma);
+        random.colorBuffer = colorBuffer;
+        random.colorsBuffered = colorsBuffered;
+        return random;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games in one JVM for web and bot clients, speaking
+ * ServerProtocol over TCP or a Unix-domain socket. Games run headless through
+ * Game and TurnEngine; there is no GUI involved.
+ *
+ * Each connection is served by its own thread, which blocks on the socket;
+ * the threads come from a cached pool so idle ones are reused. TIMED sessions
+ * share one TickWheel for their clocks. A session lives until its client
+ * closes it or the connection that created it ends. With a replay directory
+ * set, every session's game is recorded there for Replayer to check. With
+ * --shuffle, sessions reshuffle dead boards instead of ending.
+ *
+ *   java -cp out GameServer [port] [--replays dir] [--shuffle]
+ *   java -cp out GameServer --unix /tmp/crystalyze.sock [--replays dir] [--shuffle]
+ */
+public class GameServer implements Closeable {
+
+    private final ServerSocketChannel server;
+    private final Path unixPath;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "crystalyze-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TickWheel ticks = new TickWheel();
+    private final Map<Integer, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSessionId = new AtomicInteger(1);
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LatencyHistogram swapLatency = Metrics.histogram("server.swap");
+    private volatile Path replayDirectory;
+    private volatile DeadBoardRule deadBoardRule = DeadBoardRule.END_GAME;
+
+    /**
+     * Binds to a TCP port (0 for any free port) or a Unix-domain socket path.
+     */
+    public GameServer(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            unixPath = ((UnixDomainSocketAddress) address).getPath();
+            Files.deleteIfExists(unixPath);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            unixPath = null;
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     */
+    public GameServer start() {
+        Thread acceptor = new Thread(this::acceptLoop, "crystalyze-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * Records the games of sessions created from now on into the directory.
+     */
+    public GameServer setReplayDirectory(Path replayDirectory) {
+        this.replayDirectory = replayDirectory;
+        return this;
+    }
+
+    /**
+     * Applies to the games of sessions created from now on.
+     */
+    public GameServer setDeadBoardRule(DeadBoardRule deadBoardRule) {
+        this.deadBoardRule = deadBoardRule;
+        return this;
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public int getSessionCount() { return sessions.size(); }
+    public int getConnectionCount() { return openConnections.get(); }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        openConnections.incrementAndGet();
+        List<GameSession> created = new ArrayList<>();
+        try (channel) {
+            if (unixPath == null) channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            TurnEngine engine = new TurnEngine();
+            byte[] scratch = new byte[Board.DEFAULT_SIZE * Board.DEFAULT_SIZE];
+            while (true) {
+                int op;
+                try {
+                    op = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (!handle(op, in, out, engine, scratch, created)) {
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away mid-request; its sessions are dropped below.
+        } finally {
+            for (GameSession session : created) closeSession(session.getId());
+            openConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Answers one request.
+     * @return false if the request could not be parsed and the connection must close.
+     */
+    private boolean handle(int op, DataInputStream in, DataOutputStream out, TurnEngine engine,
+                           byte[] scratch, List<GameSession> created) throws IOException {
+        switch (op) {
+            case ServerProtocol.NEW_GAME: {
+                int modeOrdinal = in.readUnsignedByte();
+                long seed = in.readLong();
+                if (modeOrdinal >= GameMode.values().length) {
+                    out.writeByte(ServerProtocol.BAD_REQUEST);
+                    return false;
+                }
+                GameMode mode = ServerProtocol.modeOf(modeOrdinal);
+                Game game = new Game(mode, seed != 0 ? seed : GameRandom.randomSeed());
+                game.setDeadBoardRule(deadBoardRule);
+                GameSession session = new GameSession(nextSessionId.getAndIncrement(), game);
+                Path replays = replayDirectory;
+                if (replays != null) {
+                    try {
+                        session.record(replays.resolve(String.format("%d-%016x.replay", session.getId(), game.getSeed())));
+                    } catch (IOException e) {
+                        System.err.println("Not recording session " + session.getId() + ": " + e);
+                    }
+                }
+                sessions.put(session.getId(), session);
+                created.add(session);
+                if (mode == GameMode.TIMED) ticks.add(session);
+                out.writeByte(ServerProtocol.OK);
+                out.writeInt(session.getId());
+                synchronized (session) {
+                    ServerProtocol.writeState(out, game, scratch(scratch, game));
+                }
+                return true;
+            }
+            case ServerProtocol.SWAP: {
+                GameSession session = sessions.get(in.readInt());
+                int from = in.readUnsignedShort();
+                int to = in.readUnsignedShort();
+                if (session == null) {
+                    out.writeByte(ServerProtocol.NO_SESSION);
+                    return true;
+                }
+                long start = System.nanoTime();
+                synchronized (session) {
+                    Game game = session.getGame();
+                    Board board = game.getBoard();
+                    if (game.isGameOver()) {
+                        out.writeByte(ServerProtocol.GAME_OVER);
+                        return true;
+                    }
+                    if (game.isPaused() || from >= board.getCellCount() || to >= board.getCellCount()) {
+                        out.writeByte(ServerProtocol.ILLEGAL_SWAP);
+                        return true;
+                    }
+                    TurnResult result = engine.play(game, from, to);
+                    if (!result.isValid()) {
+                        out.writeByte(ServerProtocol.ILLEGAL_SWAP);
+                        return true;
+                    }
+                    session.recordTurn(from, to);
+                    out.writeByte(ServerProtocol.OK);
+                    out.writeInt(result.getPoints());
+                    out.writeByte(Math.min(255, result.getChainDepth()));
+                    ServerProtocol.writeState(out, game, scratch(scratch, game));
+                }
+                swapLatency.recordSince(start);
+                return true;
+            }
+            case ServerProtocol.STATE:
+            case ServerProtocol.PAUSE: {
+                GameSession session = sessions.get(in.readInt());
+                if (session == null) {
+                    out.writeByte(ServerProtocol.NO_SESSION);
+                    return true;
+                }
+                synchronized (session) {
+                    Game game = session.getGame();
+                    if (op == ServerProtocol.PAUSE && !game.isGameOver()) game.togglePause();
+                    out.writeByte(ServerProtocol.OK);
+                    ServerProtocol.writeState(out, game, scratch(scratch, game));
+                }
+                return true;
+            }
+            case ServerProtocol.CLOSE: {
+                int id = in.readInt();
+                GameSession session = closeSession(id);
+                if (session != null) created.remove(session);
+                out.writeByte(session != null ? ServerProtocol.OK : ServerProtocol.NO_SESSION);
+                return true;
+            }
+            default:
+                out.writeByte(ServerProtocol.BAD_REQUEST);
+                return false;
+        }
+    }
+
+    private static byte[] scratch(byte[] scratch, Game game) {
+        int cells = game.getBoard().getCellCount();
+        return scratch.length >= cells ? scratch : new byte[cells];
+    }
+
+    private GameSession closeSession(int id) {
+        GameSession session = sessions.remove(id);
+        if (session != null) {
+            ticks.remove(session);
+            session.close();
+        }
+        return session;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Integer id : sessions.keySet()) closeSession(id);
+        connections.shutdownNow();
+        ticks.shutdown();
+        if (unixPath != null) Files.deleteIfExists(unixPath);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SocketAddress address = new InetSocketAddress(ServerProtocol.DEFAULT_PORT);
+        Path replays = null;
+        DeadBoardRule deadBoards = DeadBoardRule.END_GAME;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--unix": address = UnixDomainSocketAddress.of(args[++i]); break;
+                case "--replays": replays = Files.createDirectories(Path.of(args[++i])); break;
+                case "--shuffle": deadBoards = DeadBoardRule.SHUFFLE; break;
+                default: address = new InetSocketAddress(Integer.parseInt(args[i]));
+            }
+        }
+        GameServer server = new GameServer(address).setReplayDirectory(replays).setDeadBoardRule(deadBoards).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.dump(System.out)));
+        System.out.println("Crystalyze server listening on " + server.getAddress());
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.printf("%d sessions on %d connections, swap p99 %.3f ms%n", server.getSessionCount(),
+                    server.getConnectionCount(), server.swapLatency.getPercentile(0.99) / 1e6);
+        }
+    }
+}
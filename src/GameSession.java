@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * One game hosted by GameServer. A session may be touched by the connection
+ * that plays it and by the tick wheel, so everything that reads or changes
+ * the game synchronizes on the session.
+ */
+public class GameSession {
+
+    private final int id;
+    private final Game game;
+    private ReplayRecorder replay;
+
+    public GameSession(int id, Game game) {
+        this.id = id;
+        this.game = game;
+    }
+
+    /**
+     * Advances a TIMED game's clock by a second.
+     * @return true once the game is over, so the session needs no more ticks.
+     */
+    public synchronized boolean tick() {
+        game.decrementTimer();
+        return game.isGameOver();
+    }
+
+    /**
+     * Records this session's game to a replay file; call before the first move.
+     */
+    public synchronized void record(Path file) throws IOException {
+        replay = new ReplayRecorder(file, game, ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Adds a turn just played to the replay, if recording. The caller must
+     * synchronize on this session.
+     */
+    public void recordTurn(int fromCell, int toCell) {
+        if (replay == null) return;
+        try {
+            replay.recordTurn(game, fromCell, toCell);
+        } catch (IOException e) {
+            System.err.println("Replay of session " + id + " stopped: " + e);
+            closeReplay();
+        }
+    }
+
+    /**
+     * Ends the recording with the game's final score.
+     */
+    public synchronized void close() {
+        if (replay == null) return;
+        try {
+            replay.finish(game);
+        } catch (IOException e) {
+            System.err.println("Replay of session " + id + " could not be finished: " + e);
+        }
+        closeReplay();
+    }
+
+    private void closeReplay() {
+        try {
+            replay.close();
+        } catch (IOException e) {
+            // Nothing more to lose
+        }
+        replay = null;
+    }
+
+    public int getId() { return id; }
+
+    /**
+     * The caller must synchronize on this session while using the game.
+     */
+    public Game getGame() { return game; }
+}
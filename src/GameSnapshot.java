@@ -0,0 +1,53 @@
+/**
+ * An immutable copy of a game's board and status, taken on the game-logic
+ * thread and handed to the event thread for painting and the score labels.
+ * The live Game and Board are never read outside the logic thread.
+ */
+public final class GameSnapshot {
+
+    private final int size;
+    private final byte[] codes;
+    private final long hash;
+    private final GameMode mode;
+    private final int score;
+    private final String status;
+    private final boolean paused;
+    private final boolean gameOver;
+
+    private GameSnapshot(Game game) {
+        Board board = game.getBoard();
+        this.size = board.getSize();
+        this.codes = new byte[board.getCellCount()];
+        board.copyCodes(codes);
+        this.hash = board.getHash();
+        this.mode = game.getMode();
+        this.score = game.getScore();
+        this.status = game.getStatusString();
+        this.paused = game.isPaused();
+        this.gameOver = game.isGameOver();
+    }
+
+    /**
+     * Must be called by the thread that owns the game.
+     */
+    public static GameSnapshot of(Game game) {
+        return new GameSnapshot(game);
+    }
+
+    /**
+     * @return the jewel at the given cell, or null if it is empty.
+     */
+    public Jewel getJewel(int row, int col) {
+        if (row < 0 || row >= size || col < 0 || col >= size) return null;
+        return Jewel.fromCode(codes[row * size + col]);
+    }
+
+    public int getSize() { return size; }
+    /** @return the board's Zobrist hash when the snapshot was taken. */
+    public long getHash() { return hash; }
+    public GameMode getMode() { return mode; }
+    public int getScore() { return score; }
+    public String getStatusString() { return status; }
+    public boolean isPaused() { return paused; }
+    public boolean isGameOver() { return gameOver; }
+}
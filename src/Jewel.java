@@ -1,19 +1,71 @@
+
 /**
  * Represents a single jewel on the board.
  * Includes a PowerUpType to track special jewels.
+ *
+ * Jewels are immutable flyweights: there is exactly one instance per
+ * (JewelType, PowerUpType) pair, obtained through Jewel.of. Each instance also
+ * has a small code (1 to 21) so a board can store a cell in a single byte;
+ * code 0 is reserved for an empty cell.
  */
-public class Jewel {
+public final class Jewel {
 
-    private JewelType type;
-    private PowerUpType powerUp;
+    public static final int EMPTY_CODE = 0;
+    private static final PowerUpType[] POWER_UPS = PowerUpType.values();
+    /** Codes run from EMPTY_CODE up to, but not including, CODE_COUNT. */
+    public static final int CODE_COUNT = 1 + JewelType.values().length * POWER_UPS.length;
+    private static final Jewel[] BY_CODE = new Jewel[CODE_COUNT];
 
-    public Jewel(JewelType type) {
-        this(type, PowerUpType.NONE);
+    static {
+        for (JewelType type : JewelType.values()) {
+            for (PowerUpType powerUp : POWER_UPS) {
+                Jewel jewel = new Jewel(type, powerUp);
+                BY_CODE[jewel.code] = jewel;
+            }
+        }
     }
 
-    public Jewel(JewelType type, PowerUpType powerUp) {
+    private final JewelType type;
+    private final PowerUpType powerUp;
+    private final byte code;
+
+    private Jewel(JewelType type, PowerUpType powerUp) {
         this.type = type;
         this.powerUp = powerUp;
+        this.code = (byte) codeOf(type, powerUp);
+    }
+
+    public static Jewel of(JewelType type) {
+        return of(type, PowerUpType.NONE);
+    }
+
+    public static Jewel of(JewelType type, PowerUpType powerUp) {
+        return BY_CODE[codeOf(type, powerUp)];
+    }
+
+    /**
+     * @return the jewel with the given code, or null for EMPTY_CODE.
+     */
+    public static Jewel fromCode(int code) {
+        return BY_CODE[code];
+    }
+
+    public static int codeOf(JewelType type, PowerUpType powerUp) {
+        return 1 + type.ordinal() * POWER_UPS.length + powerUp.ordinal();
+    }
+
+    /**
+     * @return the color ordinal encoded in a non-empty code.
+     */
+    public static int typeOrdinalOf(int code) {
+        return (code - 1) / POWER_UPS.length;
+    }
+
+    /**
+     * @return the power-up ordinal encoded in a non-empty code.
+     */
+    public static int powerUpOrdinalOf(int code) {
+        return (code - 1) % POWER_UPS.length;
     }
 
     public JewelType getType() {
@@ -23,9 +75,20 @@ public class Jewel {
     public PowerUpType getPowerUp() {
         return powerUp;
     }
-    
-    public void setPowerUp(PowerUpType powerUp) {
-        this.powerUp = powerUp;
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return the jewel of the same color carrying the given power-up.
+     */
+    public Jewel withPowerUp(PowerUpType powerUp) {
+        return of(type, powerUp);
     }
-}
 
+    @Override
+    public String toString() {
+        return powerUp == PowerUpType.NONE ? type.name() : type + "/" + powerUp;
+    }
+}
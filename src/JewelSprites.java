@@ -0,0 +1,116 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Pre-rendered jewel images for BoardPanel.
+ * Holds one image per JewelType x PowerUpType, plain and with the highlight
+ * flash, so painting a jewel is a single drawImage instead of building shapes,
+ * colors and gradients every frame. Images are rendered at the screen's pixel
+ * scale; BoardPanel builds a new set when the cell size or scale changes.
+ */
+public class JewelSprites {
+
+    private static final Color[] COLORS = {
+        new Color(220, 20, 60),   // RED
+        new Color(0, 201, 87),    // GREEN
+        new Color(30, 144, 255),  // BLUE
+        new Color(255, 215, 0),   // YELLOW
+        new Color(148, 0, 211),   // PURPLE
+        new Color(255, 140, 0),   // ORANGE
+        new Color(245, 245, 245)  // WHITE
+    };
+    private static final Color FLASH = new Color(255, 255, 255, 150);
+
+    private final int cellSize;
+    private final double scale;
+    // Indexed by jewel code * 2, plus 1 for the highlighted variant.
+    private final Image[] sprites;
+
+    /**
+     * @param cellSize the cell size in logical pixels
+     * @param scale device pixels per logical pixel, e.g. 2 on a HiDPI screen
+     * @param config the screen to make compatible images for, or null offscreen
+     */
+    public JewelSprites(int cellSize, double scale, GraphicsConfiguration config) {
+        this.cellSize = cellSize;
+        this.scale = scale;
+        this.sprites = new Image[(Jewel.codeOf(JewelType.values()[JewelType.values().length - 1], PowerUpType.HYPER_CUBE) + 1) * 2];
+        int pixels = (int) Math.ceil(cellSize * scale);
+        for (JewelType type : JewelType.values()) {
+            for (PowerUpType powerUp : PowerUpType.values()) {
+                Jewel jewel = Jewel.of(type, powerUp);
+                for (int highlighted = 0; highlighted < 2; highlighted++) {
+                    BufferedImage image = config != null
+                            ? config.createCompatibleImage(pixels, pixels, Transparency.TRANSLUCENT)
+                            : new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = image.createGraphics();
+                    try {
+                        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                        g.scale(scale, scale);
+                        render(g, jewel, highlighted == 1);
+                    } finally {
+                        g.dispose();
+                    }
+                    sprites[jewel.getCode() * 2 + highlighted] = image;
+                }
+            }
+        }
+    }
+
+    public boolean matches(int cellSize, double scale) {
+        return this.cellSize == cellSize && this.scale == scale;
+    }
+
+    public Image get(Jewel jewel, boolean highlighted) {
+        return sprites[jewel.getCode() * 2 + (highlighted ? 1 : 0)];
+    }
+
+    public static Color getColor(JewelType type) {
+        return COLORS[type.ordinal()];
+    }
+
+    /**
+     * Draws a jewel filling one cell at the origin, with a faceted look.
+     */
+    private void render(Graphics2D g, Jewel jewel, boolean highlighted) {
+        float jewelSize = cellSize;
+        float centerX = cellSize / 2f;
+        float centerY = cellSize / 2f;
+
+        float radius = jewelSize * 0.9f / 2;
+        Shape shape = new Ellipse2D.Float(centerX - radius, centerY - radius, radius * 2, radius * 2);
+
+        Color baseColor = getColor(jewel.getType());
+        Color highlightColor = baseColor.brighter();
+
+        g.setColor(baseColor.darker());
+        g.fill(shape);
+
+        AffineTransform at = AffineTransform.getTranslateInstance(centerX, centerY);
+        at.scale(0.85, 0.85);
+        at.translate(-centerX, -centerY);
+        Shape innerShape = at.createTransformedShape(shape);
+
+        g.setPaint(new RadialGradientPaint(centerX, centerY, jewelSize, new float[]{0f, 1f}, new Color[]{highlightColor, baseColor}));
+        g.fill(innerShape);
+
+        if (highlighted) {
+            g.setColor(FLASH);
+            g.fill(shape);
+        }
+
+        if (jewel.getPowerUp() != PowerUpType.NONE) {
+            g.setColor(Color.WHITE);
+            g.setStroke(new BasicStroke(3));
+            float powerUpSize = jewelSize * 0.3f;
+            if (jewel.getPowerUp() == PowerUpType.FLAME_GEM) {
+                g.draw(new Ellipse2D.Float(centerX - powerUpSize / 2, centerY - powerUpSize / 2, powerUpSize, powerUpSize));
+            } else {
+                g.draw(new Rectangle2D.Float(centerX - powerUpSize / 2, centerY - powerUpSize / 2, powerUpSize, powerUpSize));
+            }
+        }
+    }
+}
@@ -1,4 +1,5 @@
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * An enumeration for the different types of jewels. 
@@ -12,9 +13,17 @@ public enum JewelType {
     ORANGE,
     WHITE;
 
-    private static final Random RAND = new Random();
+    private static final JewelType[] VALUES = values();
 
+    /**
+     * Draws from the calling thread's generator. Boards draw from their game's
+     * own GameRandom instead, so games stay reproducible.
+     */
     public static JewelType getRandom() {
-        return values()[RAND.nextInt(values().length)];
+        return getRandom(ThreadLocalRandom.current());
+    }
+
+    public static JewelType getRandom(RandomGenerator random) {
+        return VALUES[random.nextInt(VALUES.length)];
     }
 }
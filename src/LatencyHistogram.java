@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, safe to record into from
+ * any thread. Buckets are log-linear: eight per power of two, so any
+ * percentile is reported within 12.5% of the true value.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values up to 2^40 ns (about 18 minutes); longer ones land in the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time since a System.nanoTime() taken at the start.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the smallest value that falls in the given bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * @param quantile from 0 to 1, e.g. 0.99
+     * @return an upper bound of the given quantile, within one bucket; 0 if empty.
+     */
+    public long getPercentile(double quantile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public String getName() { return name; }
+    public long getCount() { return count.sum(); }
+    public long getMax() { return max.get(); }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-22s n=%-8d mean=%9.3f ms  p50=%9.3f  p90=%9.3f  p99=%9.3f  max=%9.3f",
+                name, getCount(), getMean() / 1e6, getPercentile(0.50) / 1e6,
+                getPercentile(0.90) / 1e6, getPercentile(0.99) / 1e6, getMax() / 1e6);
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * High scores kept on disk, one append-only ScoreLog per GameMode plus a file
+ * of player names, with in-memory indexes for top-k, rank-of-score and
+ * per-player-best queries in logarithmic time.
+ *
+ * Submissions are queued and written by one committer thread, which takes
+ * everything queued since its last write and covers it with one fsync per
+ * file, so many concurrent submitters share each sync. A submission's future
+ * completes with its rank once its score is on disk and visible to queries.
+ *
+ * Safe for concurrent use.
+ */
+public class Leaderboard implements Closeable {
+
+    public static final int MAX_NAME_LENGTH = 64;
+
+    private final EnumMap<GameMode, ScoreLog> logs = new EnumMap<>(GameMode.class);
+    private final FileChannel playerFile;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> playerIds = new HashMap<>();
+    private int savedPlayers;
+    private long playerFileBytes;
+
+    private final List<Submission> queue = new ArrayList<>();
+    private boolean closing;
+    private final Thread committer;
+    private final LatencyHistogram commitLatency = Metrics.histogram("leaderboard.commit");
+    private final IntFunction<String> nameOf = this::nameOf;
+
+    /**
+     * Opens the leaderboard in the directory, creating it if needed, and
+     * rebuilds the indexes from the logs.
+     */
+    public Leaderboard(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path playerPath = directory.resolve("players.dat");
+        playerFile = FileChannel.open(playerPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadPlayers();
+        for (GameMode mode : GameMode.values()) {
+            logs.put(mode, new ScoreLog(directory.resolve(mode.name().toLowerCase() + ".scores"), mode));
+        }
+        committer = new Thread(this::commitLoop, "crystalyze-leaderboard");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Player names are written with writeUTF, one after another; their position
+     * in the file is their id. A name cut short by a crash is dropped.
+     */
+    private void loadPlayers() throws IOException {
+        long size = playerFile.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(playerFile.position(0)), 1 << 16));
+        long position = 0;
+        try {
+            while (position < size) {
+                String name = in.readUTF();
+                playerIds.put(name, names.size());
+                names.add(name);
+                position += 2 + utfLength(name);
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            playerFile.truncate(position);
+            playerFile.force(true);
+        }
+        savedPlayers = names.size();
+        playerFileBytes = position;
+    }
+
+    /**
+     * @return the bytes writeUTF uses for the name, after its length.
+     */
+    private static int utfLength(String name) {
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+        return length;
+    }
+
+    /**
+     * Queues a finished game's score.
+     * @param seed the game's seed, to find its replay
+     * @return a future completing with the score's rank once it is durable
+     */
+    public CompletableFuture<Integer> submit(GameMode mode, String player, int score, long seed) {
+        if (score < 0) throw new IllegalArgumentException("Negative score " + score);
+        if (player == null || player.isEmpty() || player.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Player names are 1 to " + MAX_NAME_LENGTH + " characters");
+        }
+        Submission submission = new Submission(mode, playerId(player), score, System.currentTimeMillis(), seed);
+        synchronized (queue) {
+            if (closing) throw new IllegalStateException("Leaderboard is closed");
+            queue.add(submission);
+            queue.notifyAll();
+        }
+        return submission.done;
+    }
+
+    private int playerId(String player) {
+        synchronized (names) {
+            Integer id = playerIds.get(player);
+            if (id != null) return id;
+            playerIds.put(player, names.size());
+            names.add(player);
+            return names.size() - 1;
+        }
+    }
+
+    private String nameOf(int player) {
+        synchronized (names) {
+            return player < names.size() ? names.get(player) : "#" + player;
+        }
+    }
+
+    private void commitLoop() {
+        List<Submission> batch = new ArrayList<>();
+        while (true) {
+            synchronized (queue) {
+                while (queue.isEmpty() && !closing) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        closing = true;
+                    }
+                }
+                if (queue.isEmpty()) return;
+                batch.addAll(queue);
+                queue.clear();
+            }
+            long start = System.nanoTime();
+            try {
+                // Names first, so no durable score refers to a lost player
+                savePlayers();
+                for (Map.Entry<GameMode, ScoreLog> log : logs.entrySet()) {
+                    List<Submission> forMode = new ArrayList<>();
+                    for (Submission submission : batch) if (submission.mode == log.getKey()) forMode.add(submission);
+                    log.getValue().append(forMode);
+                }
+                commitLatency.recordSince(start);
+                for (Submission submission : batch) submission.done.complete(submission.rank);
+            } catch (IOException | RuntimeException e) {
+                for (Submission submission : batch) submission.done.completeExceptionally(e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void savePlayers() throws IOException {
+        List<String> unsaved;
+        synchronized (names) {
+            unsaved = new ArrayList<>(names.subList(savedPlayers, names.size()));
+        }
+        if (unsaved.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String name : unsaved) out.writeUTF(name);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) playerFileBytes += playerFile.write(buffer, playerFileBytes);
+        playerFile.force(false);
+        savedPlayers += unsaved.size();
+    }
+
+    /**
+     * @return up to k entries from the top, best first.
+     */
+    public List<Entry> top(GameMode mode, int k) throws IOException {
+        return Arrays.asList(logs.get(mode).top(k, nameOf));
+    }
+
+    /**
+     * @return the entry at the 1-based rank.
+     */
+    public Entry at(GameMode mode, int rank) throws IOException {
+        return logs.get(mode).at(rank, nameOf);
+    }
+
+    /**
+     * @return the rank a game with this score would take: one more than the
+     * number of entries that scored higher.
+     */
+    public int rankOf(GameMode mode, int score) {
+        return logs.get(mode).rankOf(score);
+    }
+
+    /**
+     * @return the player's best entry, or null if the player has none in this mode.
+     */
+    public Entry best(GameMode mode, String player) throws IOException {
+        Integer id;
+        synchronized (names) {
+            id = playerIds.get(player);
+        }
+        return id == null ? null : logs.get(mode).best(id, nameOf);
+    }
+
+    public int size(GameMode mode) {
+        return logs.get(mode).size();
+    }
+
+    /**
+     * Drops every entry that is neither in the top keepTop nor some player's
+     * best, so the log stops growing with games nobody will look up again.
+     * Ranks of the remaining entries are unchanged within the top keepTop.
+     * @return how many entries were dropped
+     */
+    public int compact(GameMode mode, int keepTop) throws IOException {
+        return logs.get(mode).compact(keepTop);
+    }
+
+    /**
+     * Writes whatever is queued, then closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            closing = true;
+            queue.notifyAll();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ScoreLog log : logs.values()) log.close();
+        playerFile.close();
+    }
+
+    /**
+     * A queued score; the committer fills in its entry and rank.
+     */
+    static final class Submission {
+        final GameMode mode;
+        final int player;
+        final int score;
+        final long epochMillis;
+        final long seed;
+        final CompletableFuture<Integer> done = new CompletableFuture<>();
+        int entry;
+        int rank;
+
+        Submission(GameMode mode, int player, int score, long epochMillis, long seed) {
+            this.mode = mode;
+            this.player = player;
+            this.score = score;
+            this.epochMillis = epochMillis;
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * One score on the board, as of the query that returned it.
+     */
+    public static final class Entry {
+        private final GameMode mode;
+        private final String player;
+        private final int score;
+        private final int rank;
+        private final long epochMillis;
+        private final long seed;
+
+        Entry(GameMode mode, String player, int score, int rank, long epochMillis, long seed) {
+            this.mode = mode;
+            this.player = player;
+            this.score = score;
+            this.rank = rank;
+            this.epochMillis = epochMillis;
+            this.seed = seed;
+        }
+
+        public GameMode getMode() { return mode; }
+        public String getPlayer() { return player; }
+        public int getScore() { return score; }
+        public int getRank() { return rank; }
+        public long getEpochMillis() { return epochMillis; }
+        /** @return the game's seed, which names its replay. */
+        public long getSeed() { return seed; }
+
+        @Override
+        public String toString() {
+            return String.format("%d. %s %d", rank, player, score);
+        }
+    }
+}
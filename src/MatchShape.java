@@ -0,0 +1,16 @@
+/**
+ * The shape of a group of matched jewels: a straight line, or lines of one
+ * color crossing each other.
+ */
+public enum MatchShape {
+    LINE_3,
+    LINE_4,
+    /** Five or more in a row. */
+    LINE_5,
+    /** Two lines meeting at their ends. */
+    L,
+    /** One line's end meeting the middle of another. */
+    T,
+    /** Two lines crossing through their middles. */
+    CROSS
+}
@@ -0,0 +1,49 @@
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The process-wide registry of latency histograms. Histograms are created on
+ * first use and live until the process exits; dump prints them all, sorted by
+ * name. The game dumps them on Ctrl+M, and at exit when run with
+ * -Dcrystalyze.metrics=true.
+ */
+public final class Metrics {
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    // The game's own histograms
+    public static final LatencyHistogram TURN = histogram("turn");
+    public static final LatencyHistogram BOARD_GENERATION = histogram("board.generation");
+    public static final LatencyHistogram BOARD_SHUFFLE = histogram("board.shuffle");
+    public static final LatencyHistogram LOGIC_QUEUE = histogram("logic.queue");
+    public static final LatencyHistogram LOGIC_TASK = histogram("logic.task");
+    public static final LatencyHistogram PAINT = histogram("paint");
+    public static final LatencyHistogram FRAME_INTERVAL = histogram("frame.interval");
+
+    static {
+        if (Boolean.getBoolean("crystalyze.metrics")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(System.out), "crystalyze-metrics"));
+        }
+    }
+
+    private Metrics() {}
+
+    /**
+     * @return the histogram with the given name, created if needed.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    public static void dump(PrintStream out) {
+        out.println("--- Crystalyze metrics (latencies in ms) ---");
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            out.println(histogram);
+        }
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) histogram.reset();
+    }
+}
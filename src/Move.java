@@ -0,0 +1,35 @@
+import java.awt.Point;
+
+/**
+ * An immutable swap of two adjacent cells.
+ */
+public class Move {
+
+    private final Point from;
+    private final Point to;
+
+    public Move(Point from, Point to) {
+        this.from = new Point(from);
+        this.to = new Point(to);
+    }
+
+    public Point getFrom() { return new Point(from); }
+    public Point getTo() { return new Point(to); }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Move)) return false;
+        Move other = (Move) o;
+        return from.equals(other.from) && to.equals(other.to);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * from.hashCode() + to.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + from.x + "," + from.y + ")->(" + to.x + "," + to.y + ")";
+    }
+}
@@ -0,0 +1,66 @@
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the set of legal swaps for a board as two bit masks, one for swaps with
+ * the right-hand neighbour and one for swaps with the cell below.
+ * Board invalidates the index whenever a cell changes; the masks are rebuilt on
+ * the next query, so repeated queries on a settled board cost nothing.
+ */
+public class MoveIndex {
+
+    private long swapsRight;
+    private long swapsDown;
+    private boolean stale = true;
+
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Rebuilds the masks if any cell changed since the last refresh.
+     * Swaps that trigger a Hyper Cube are always legal.
+     */
+    public void refresh(BitBoard masks) {
+        if (!stale) return;
+        long cubes = masks.getPowerUpMask(PowerUpType.HYPER_CUBE);
+        swapsRight = masks.findLegalSwapsRight() | BitBoard.withRightNeighbour(cubes);
+        swapsDown = masks.findLegalSwapsDown() | BitBoard.withLowerNeighbour(cubes);
+        stale = false;
+    }
+
+    public boolean hasMoves() {
+        return (swapsRight | swapsDown) != 0L;
+    }
+
+    public int countMoves() {
+        return Long.bitCount(swapsRight) + Long.bitCount(swapsDown);
+    }
+
+    public long getSwapsRight() { return swapsRight; }
+    public long getSwapsDown() { return swapsDown; }
+
+    public boolean isLegal(Point p1, Point p2) {
+        Point first = (p1.x < p2.x || p1.y < p2.y) ? p1 : p2;
+        long bit = BitBoard.bit(first.x, first.y);
+        if (p1.x == p2.x) return (swapsRight & bit) != 0L;
+        return (swapsDown & bit) != 0L;
+    }
+
+    /**
+     * @return every legal swap, in row-major order of the upper-left cell.
+     */
+    public List<Move> getMoves() {
+        List<Move> moves = new ArrayList<>(countMoves());
+        long right = swapsRight;
+        long down = swapsDown;
+        for (int index = 0; index < BitBoard.SIZE * BitBoard.SIZE; index++) {
+            int row = index / BitBoard.SIZE;
+            int col = index % BitBoard.SIZE;
+            if ((right & (1L << index)) != 0L) moves.add(new Move(new Point(row, col), new Point(row, col + 1)));
+            if ((down & (1L << index)) != 0L) moves.add(new Move(new Point(row, col), new Point(row + 1, col)));
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses swaps for simulated players. A policy may keep scratch state between
+ * calls, so every thread needs its own; create them with forName and close
+ * them when done.
+ */
+public interface MovePolicy extends AutoCloseable {
+
+    /**
+     * @return the swap to play, packed with swap(fromCell, toCell), or NO_MOVE
+     * if the settled board has none
+     */
+    int choose(Game game, GameRandom random);
+
+    int NO_MOVE = -1;
+
+    static int swap(int fromCell, int toCell) { return fromCell << 16 | toCell; }
+    static int fromCell(int swap) { return swap >>> 16; }
+    static int toCell(int swap) { return swap & 0xFFFF; }
+
+    /**
+     * Releases whatever the policy holds, such as a search pool.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * @param name random, greedy or solver
+     */
+    static MovePolicy forName(String name) {
+        checkName(name);
+        switch (name) {
+            case "random": return new RandomMoves();
+            case "greedy": return new Greedy();
+            default: return new Searching(Searching.DEFAULT_BUDGET_MILLIS);
+        }
+    }
+
+    /**
+     * Fails as forName would on an unknown name, without creating a policy.
+     */
+    static void checkName(String name) {
+        switch (name) {
+            case "random":
+            case "greedy":
+            case "solver":
+                return;
+            default: throw new IllegalArgumentException("Unknown policy " + name + "; use random, greedy or solver");
+        }
+    }
+
+    /**
+     * Picks the k-th legal swap, in the move index's order.
+     */
+    static int legalSwap(Board board, int k) {
+        MoveIndex index = board.getMoveIndex();
+        long right = index.getSwapsRight();
+        int rightCount = Long.bitCount(right);
+        if (k < rightCount) {
+            int cell = nthSetBit(right, k);
+            return swap(cell, cell + 1);
+        }
+        int cell = nthSetBit(index.getSwapsDown(), k - rightCount);
+        return swap(cell, cell + board.getSize());
+    }
+
+    private static int nthSetBit(long bits, int n) {
+        for (int i = 0; i < n; i++) bits &= bits - 1;
+        return Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Any legal swap, uniformly.
+     */
+    final class RandomMoves implements MovePolicy {
+        @Override
+        public int choose(Game game, GameRandom random) {
+            int count = game.getBoard().getMoveIndex().countMoves();
+            return count == 0 ? NO_MOVE : legalSwap(game.getBoard(), random.nextInt(count));
+        }
+    }
+
+    /**
+     * The swap that scores the most this turn, cascades included, trying each
+     * on a scratch copy with the same refills. Ties go to the first found.
+     */
+    final class Greedy implements MovePolicy {
+        private final TurnEngine engine = new TurnEngine();
+        private final GameRandom refills = new GameRandom(0L);
+        private Board scratch;
+
+        @Override
+        public int choose(Game game, GameRandom random) {
+            Board board = game.getBoard();
+            int count = board.getMoveIndex().countMoves();
+            if (count == 0) return NO_MOVE;
+            if (scratch == null || scratch.getSize() != board.getSize()) scratch = new Board(board.getSize(), refills);
+            long refillSeed = random.nextLong();
+            int best = NO_MOVE;
+            int bestPoints = -1;
+            for (int k = 0; k < count; k++) {
+                int swap = legalSwap(board, k);
+                scratch.copyFrom(board);
+                refills.reseed(refillSeed);
+                // A TIMED game never runs out of moves, whatever the real game's mode
+                int points = engine.play(new Game(GameMode.TIMED, scratch), fromCell(swap), toCell(swap)).getPoints();
+                if (points > bestPoints) {
+                    best = swap;
+                    bestPoints = points;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Solver's choice within a small time budget per move, searching on a
+     * one-thread pool of its own so simulator threads do not share one. How
+     * deep it gets in the budget depends on the machine's load, so its choices
+     * are not reproducible.
+     */
+    final class Searching implements MovePolicy {
+        static final long DEFAULT_BUDGET_MILLIS = 2;
+        private final ForkJoinPool pool = new ForkJoinPool(1);
+        private final Solver solver = new Solver(pool, 1, 2, 16);
+        private final long budgetMillis;
+
+        Searching(long budgetMillis) {
+            this.budgetMillis = budgetMillis;
+        }
+
+        @Override
+        public int choose(Game game, GameRandom random) {
+            Board board = game.getBoard();
+            Move move = solver.solve(board, budgetMillis).getMove();
+            if (move == null) return NO_MOVE;
+            return swap(board.cellOf(move.getFrom().x, move.getFrom().y), board.cellOf(move.getTo().x, move.getTo().y));
+        }
+
+        @Override
+        public void close() {
+            pool.shutdown();
+        }
+    }
+}
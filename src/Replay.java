@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recorded game, read back from the file a ReplayRecorder wrote. A game is
+ * reproducible from its mode, dead-board rule, seed and kept swaps, so that is most of what the
+ * file holds; replaying runs the swaps through TurnEngine at machine speed.
+ *
+ * Format, append-only; varints are unsigned LEB128:
+ *
+ *   header:   magic(4) version(1) mode(1) deadBoardRule(1) seed(8) keyframeInterval(varint)
+ *   SWAP:     1 fromCell toCell seconds millis            (varints)
+ *   KEYFRAME: 2 turn cascadeSeconds length(varints) GameCodec record
+ *   END:      3 seconds millis(varints) finalScore(4)
+ *
+ * seconds is how far the game clock ticked since the previous swap (always 0
+ * in MOVES mode) and millis the wall time since the previous record. A
+ * keyframe holds the game as it stood after the given turn settled, so a
+ * viewer can seek without replaying from the start; cascadeSeconds is how far
+ * the clock ticked while that turn's cascade played. A file cut short by a
+ * crash reads up to its last whole record and counts as unfinished.
+ * Version 1 files have no deadBoardRule byte; their games end on a dead board.
+ */
+public class Replay {
+
+    static final int MAGIC = 0x4352504C; // "CRPL"
+    static final int VERSION = 2;
+    static final int SWAP = 1;
+    static final int KEYFRAME = 2;
+    static final int END = 3;
+
+    private final byte[] bytes;
+    private GameMode mode;
+    private DeadBoardRule deadBoardRule = DeadBoardRule.END_GAME;
+    private long seed;
+    private int keyframeInterval;
+
+    private int turns;
+    private int[] from = new int[64];
+    private int[] to = new int[64];
+    private int[] seconds = new int[64];
+    private long[] millis = new long[64];
+
+    private int keyframes;
+    private int[] keyframeTurns = new int[8];
+    private int[] keyframeSeconds = new int[8];
+    private int[] keyframeOffsets = new int[8];
+    private int[] keyframeLengths = new int[8];
+
+    private boolean finished;
+    private int endSeconds;
+    private long totalMillis;
+    private int finalScore;
+
+    private int position;
+
+    private Replay(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static Replay read(Path path) throws IOException {
+        return parse(Files.readAllBytes(path));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a replay
+     */
+    public static Replay parse(byte[] bytes) {
+        Replay replay = new Replay(bytes);
+        replay.parse();
+        return replay;
+    }
+
+    private void parse() {
+        if (bytes.length < 5 || ByteBuffer.wrap(bytes).getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a replay");
+        }
+        if (bytes[4] != 1 && bytes[4] != VERSION) throw new IllegalArgumentException("Unsupported replay version " + bytes[4]);
+        // Magic, version, mode, seed and keyframe interval; version 2 adds the dead-board rule
+        if (bytes.length < (bytes[4] == 1 ? 15 : 16)) throw new IllegalArgumentException("Truncated replay header");
+        if (bytes[5] < 0 || bytes[5] >= GameMode.values().length) throw new IllegalArgumentException("Bad game mode " + bytes[5]);
+        mode = GameMode.values()[bytes[5]];
+        position = 6;
+        if (bytes[4] == VERSION) {
+            int rule = bytes[position++];
+            if (rule < 0 || rule >= DeadBoardRule.values().length) throw new IllegalArgumentException("Bad dead-board rule " + rule);
+            deadBoardRule = DeadBoardRule.values()[rule];
+        }
+        seed = ByteBuffer.wrap(bytes, position, 8).getLong();
+        position += 8;
+        try {
+            keyframeInterval = (int) readVarint();
+            while (position < bytes.length && !finished) {
+                int recordStart = position;
+                try {
+                    readRecord();
+                } catch (ArrayIndexOutOfBoundsException e) {
+                    // A record cut short by a crash; keep what came before it
+                    position = recordStart;
+                    break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated replay header", e);
+        }
+    }
+
+    private void readRecord() {
+        int tag = bytes[position++];
+        switch (tag) {
+            case SWAP: {
+                int swapFrom = (int) readVarint();
+                int swapTo = (int) readVarint();
+                int swapSeconds = (int) readVarint();
+                long swapMillis = totalMillis + readVarint();
+                if (turns == from.length) grow();
+                from[turns] = swapFrom;
+                to[turns] = swapTo;
+                seconds[turns] = swapSeconds;
+                millis[turns] = swapMillis;
+                totalMillis = swapMillis;
+                turns++;
+                break;
+            }
+            case KEYFRAME: {
+                int turn = (int) readVarint();
+                int cascadeSeconds = (int) readVarint();
+                int length = (int) readVarint();
+                if (position + length > bytes.length) throw new ArrayIndexOutOfBoundsException(position + length);
+                if (turn != turns) throw new IllegalArgumentException("Keyframe for turn " + turn + " after turn " + turns);
+                if (keyframes == keyframeTurns.length) {
+                    keyframeTurns = Arrays.copyOf(keyframeTurns, keyframes * 2);
+                    keyframeSeconds = Arrays.copyOf(keyframeSeconds, keyframes * 2);
+                    keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+                    keyframeLengths = Arrays.copyOf(keyframeLengths, keyframes * 2);
+                }
+                keyframeTurns[keyframes] = turn;
+                keyframeSeconds[keyframes] = cascadeSeconds;
+                keyframeOffsets[keyframes] = position;
+                keyframeLengths[keyframes] = length;
+                keyframes++;
+                position += length;
+                break;
+            }
+            case END: {
+                int lastSeconds = (int) readVarint();
+                long lastMillis = totalMillis + readVarint();
+                int score = (bytes[position] & 0xff) << 24 | (bytes[position + 1] & 0xff) << 16
+                        | (bytes[position + 2] & 0xff) << 8 | (bytes[position + 3] & 0xff);
+                position += 4;
+                endSeconds = lastSeconds;
+                totalMillis = lastMillis;
+                finalScore = score;
+                finished = true;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Bad replay record " + tag + " at byte " + (position - 1));
+        }
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 63) throw new IllegalArgumentException("Bad varint at byte " + position);
+            int b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private void grow() {
+        from = Arrays.copyOf(from, turns * 2);
+        to = Arrays.copyOf(to, turns * 2);
+        seconds = Arrays.copyOf(seconds, turns * 2);
+        millis = Arrays.copyOf(millis, turns * 2);
+    }
+
+    /**
+     * Rebuilds the game as it stood after the given number of turns, starting
+     * from the nearest keyframe at or before it. Board and score are exact; on
+     * a keyframe's own turn the clock also shows the seconds that ticked while
+     * its cascade played, which a replay from the seed counts with the next swap.
+     * @throws IllegalStateException if a recorded swap is refused on replay
+     */
+    public Game replayTo(int turn) {
+        if (turn < 0 || turn > turns) throw new IndexOutOfBoundsException("Turn " + turn + " of " + turns);
+        int keyframe = keyframes - 1;
+        while (keyframe >= 0 && keyframeTurns[keyframe] > turn) keyframe--;
+        if (keyframe < 0) {
+            Game game = newGame();
+            play(game, 0, turn, 0, new TurnEngine());
+            return game;
+        }
+        Game game = decodeKeyframe(keyframe);
+        play(game, keyframeTurns[keyframe], turn, keyframeSeconds[keyframe], new TurnEngine());
+        return game;
+    }
+
+    /**
+     * Replays the whole game from its seed, ignoring the keyframes except to
+     * check them, and compares the result with the recorded final score.
+     */
+    public Verification verify() {
+        return verify(new TurnEngine());
+    }
+
+    /**
+     * As verify(), reusing the caller's engine so bulk checks allocate less.
+     */
+    public Verification verify(TurnEngine engine) {
+        Game game = newGame();
+        int turn = 0;
+        try {
+            for (int keyframe = 0; keyframe < keyframes; keyframe++) {
+                play(game, turn, keyframeTurns[keyframe], 0, engine);
+                turn = keyframeTurns[keyframe];
+                Game saved = decodeKeyframe(keyframe);
+                if (saved.getBoard().getHash() != game.getBoard().getHash() || saved.getScore() != game.getScore()) {
+                    return new Verification(false, game.getScore(), "keyframe at turn " + turn + " does not match the replay");
+                }
+            }
+            play(game, turn, turns, 0, engine);
+            for (int s = 0; s < endSeconds; s++) game.decrementTimer();
+        } catch (IllegalStateException e) {
+            return new Verification(false, game.getScore(), e.getMessage());
+        }
+        if (!finished) return new Verification(false, game.getScore(), "unfinished: no end record");
+        if (game.getScore() != finalScore) {
+            return new Verification(false, game.getScore(), "claims " + finalScore + " but replays to " + game.getScore());
+        }
+        return new Verification(true, game.getScore(), null);
+    }
+
+    /**
+     * Plays turns [first, until), ticking the game clock before each swap.
+     * @param ticked seconds already ticked toward the first swap, when starting from a keyframe
+     */
+    private void play(Game game, int first, int until, int ticked, TurnEngine engine) {
+        for (int i = first; i < until; i++) {
+            for (int s = i == first ? ticked : 0; s < seconds[i]; s++) game.decrementTimer();
+            if (!engine.play(game, from[i], to[i]).isValid()) {
+                throw new IllegalStateException("turn " + (i + 1) + " swaps cells " + from[i] + " and " + to[i]
+                        + ", which the game refuses");
+            }
+        }
+    }
+
+    private Game newGame() {
+        Game game = new Game(mode, seed);
+        game.setDeadBoardRule(deadBoardRule);
+        return game;
+    }
+
+    private Game decodeKeyframe(int keyframe) {
+        return GameCodec.decode(ByteBuffer.wrap(bytes, keyframeOffsets[keyframe], keyframeLengths[keyframe]));
+    }
+
+    public GameMode getMode() { return mode; }
+    public DeadBoardRule getDeadBoardRule() { return deadBoardRule; }
+    public long getSeed() { return seed; }
+    public int getTurnCount() { return turns; }
+    public int getKeyframeCount() { return keyframes; }
+    public int getKeyframeInterval() { return keyframeInterval; }
+    /** @return true if the file has its end record. */
+    public boolean isFinished() { return finished; }
+    /** @return the score recorded at the end, or 0 for an unfinished replay. */
+    public int getFinalScore() { return finalScore; }
+    /** @return wall time from the start of the game to the given turn's swap. */
+    public long getMillisAt(int turn) { return millis[turn]; }
+    public long getTotalMillis() { return totalMillis; }
+
+    /**
+     * The outcome of verifying one replay.
+     */
+    public static final class Verification {
+        private final boolean valid;
+        private final int replayedScore;
+        private final String problem;
+
+        Verification(boolean valid, int replayedScore, String problem) {
+            this.valid = valid;
+            this.replayedScore = replayedScore;
+            this.problem = problem;
+        }
+
+        public boolean isValid() { return valid; }
+        public int getReplayedScore() { return replayedScore; }
+        /** @return why the replay failed, or null if it is valid. */
+        public String getProblem() { return problem; }
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends one game to a replay file as it is played; see Replay for the
+ * format. Start it on a fresh game built from a seed, report each kept swap
+ * with swapped and each settled turn with settled, and finish it when the game
+ * ends. Every record is flushed to the file as it is written, so a crash loses
+ * at most the turn in progress.
+ *
+ * Not thread-safe: call it from the thread that owns the game.
+ */
+public class ReplayRecorder implements Closeable {
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+
+    private final DataOutputStream out;
+    private final int keyframeInterval;
+    private final long startNanos = System.nanoTime();
+    private long lastMillis;
+    private int lastTimerSeconds;
+    private int turns;
+    private boolean closed;
+
+    // The kept swap whose cascade has not settled yet
+    private boolean pending;
+    private int pendingFrom;
+    private int pendingTo;
+    private int pendingSeconds;
+    private long pendingMillis;
+
+    /**
+     * Creates the file and writes its header.
+     * @param game a game just built with Game(mode, seed), before any move
+     * @param keyframeInterval turns between keyframes, or 0 for none
+     * @throws IOException also if the file already exists
+     */
+    public ReplayRecorder(Path path, Game game, int keyframeInterval) throws IOException {
+        this.keyframeInterval = keyframeInterval;
+        this.lastTimerSeconds = game.getTimerSeconds();
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        out.writeInt(Replay.MAGIC);
+        out.writeByte(Replay.VERSION);
+        out.writeByte(game.getMode().ordinal());
+        out.writeByte(game.getDeadBoardRule().ordinal());
+        out.writeLong(game.getSeed());
+        writeVarint(keyframeInterval);
+        out.flush();
+    }
+
+    /**
+     * Notes a swap the game kept, with the game clock and wall time it was made at.
+     */
+    public void swapped(Game game, int fromCell, int toCell) {
+        pending = true;
+        pendingFrom = fromCell;
+        pendingTo = toCell;
+        pendingSeconds = takeSeconds(game);
+        pendingMillis = takeMillis();
+    }
+
+    /**
+     * Writes the turn begun by the last swap once its cascade has settled, and
+     * a keyframe if one is due.
+     */
+    public void settled(Game game) throws IOException {
+        if (!pending || closed) return;
+        pending = false;
+        out.writeByte(Replay.SWAP);
+        writeVarint(pendingFrom);
+        writeVarint(pendingTo);
+        writeVarint(pendingSeconds);
+        writeVarint(pendingMillis);
+        turns++;
+        if (keyframeInterval > 0 && turns % keyframeInterval == 0) {
+            byte[] keyframe = GameCodec.encode(game);
+            out.writeByte(Replay.KEYFRAME);
+            writeVarint(turns);
+            // Ticks during the cascade are counted again with the next swap
+            writeVarint(lastTimerSeconds - game.getTimerSeconds());
+            writeVarint(keyframe.length);
+            out.write(keyframe);
+        }
+        out.flush();
+    }
+
+    /**
+     * A swap and its settled cascade in one go, for callers that resolve the
+     * whole turn at once.
+     */
+    public void recordTurn(Game game, int fromCell, int toCell) throws IOException {
+        swapped(game, fromCell, toCell);
+        settled(game);
+    }
+
+    /**
+     * Writes the end record with the final score and closes the file.
+     */
+    public void finish(Game game) throws IOException {
+        if (closed) return;
+        settled(game);
+        out.writeByte(Replay.END);
+        writeVarint(takeSeconds(game));
+        writeVarint(takeMillis());
+        out.writeInt(game.getScore());
+        close();
+    }
+
+    private int takeSeconds(Game game) {
+        int ticked = lastTimerSeconds - game.getTimerSeconds();
+        lastTimerSeconds = game.getTimerSeconds();
+        return ticked;
+    }
+
+    private long takeMillis() {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        long delta = millis - lastMillis;
+        lastMillis = millis;
+        return delta;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public int getTurns() { return turns; }
+
+    /**
+     * Closes the file without an end record; the replay reads as unfinished.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        out.close();
+    }
+}
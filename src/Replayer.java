@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Checks recorded games headless: every replay file named, or found under a
+ * named directory, is re-simulated from its seed and its final score checked.
+ * Files are spread over one thread per core; only failures are printed, then
+ * a summary.
+ *
+ *   java -cp out Replayer replays/ more.replay ...
+ *   java -cp out Replayer --seek turn game.replay
+ */
+public class Replayer {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("--seek")) {
+            seek(Paths.get(args[2]), Integer.parseInt(args[1]));
+            return;
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: Replayer <file or directory>... | --seek <turn> <file>");
+            System.exit(2);
+        }
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) collect(Paths.get(arg), files);
+        System.exit(verifyAll(files) == 0 ? 0 : 1);
+    }
+
+    private static void collect(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.filter(p -> p.toString().endsWith(".replay")).sorted().forEach(files::add);
+        }
+    }
+
+    /**
+     * @return the number of replays that failed
+     */
+    private static int verifyAll(List<Path> files) throws InterruptedException {
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger unfinished = new AtomicInteger();
+        long[] turns = new long[threads];
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers.add(pool.submit(() -> {
+                TurnEngine engine = new TurnEngine();
+                for (int i = next.getAndIncrement(); i < files.size(); i = next.getAndIncrement()) {
+                    Path file = files.get(i);
+                    try {
+                        Replay replay = Replay.read(file);
+                        Replay.Verification result = replay.verify(engine);
+                        turns[worker] += replay.getTurnCount();
+                        if (!replay.isFinished()) unfinished.incrementAndGet();
+                        if (!result.isValid()) {
+                            failed.incrementAndGet();
+                            System.out.println(file + ": " + result.getProblem());
+                        }
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        System.out.println(file + ": " + e);
+                    } catch (IllegalArgumentException e) {
+                        failed.incrementAndGet();
+                        System.out.println(file + ": " + e.getMessage());
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long totalTurns = 0;
+        for (long t : turns) totalTurns += t;
+        System.out.printf("%d replays, %d failed (%d unfinished), %d turns in %.2f s: %.0f replays per minute on %d threads%n",
+                files.size(), failed.get(), unfinished.get(), totalTurns, seconds, files.size() / seconds * 60, threads);
+        return failed.get();
+    }
+
+    private static void seek(Path file, int turn) throws IOException {
+        Replay replay = Replay.read(file);
+        Game game = replay.replayTo(turn);
+        System.out.printf("%s seed %d, turn %d of %d at %.1f s: score %d, %s %s%n",
+                replay.getMode(), replay.getSeed(), turn, replay.getTurnCount(),
+                turn == 0 ? 0.0 : replay.getMillisAt(turn - 1) / 1000.0, game.getScore(),
+                replay.getMode() == GameMode.TIMED ? "time" : "moves", game.getStatusString());
+        Board board = game.getBoard();
+        StringBuilder grid = new StringBuilder();
+        for (int r = 0; r < board.getSize(); r++) {
+            for (int c = 0; c < board.getSize(); c++) {
+                Jewel jewel = board.getJewel(r, c);
+                if (jewel == null) {
+                    grid.append(" . ");
+                    continue;
+                }
+                grid.append(' ').append(jewel.getType().name().charAt(0));
+                PowerUpType powerUp = jewel.getPowerUp();
+                grid.append(powerUp == PowerUpType.FLAME_GEM ? '*' : powerUp == PowerUpType.HYPER_CUBE ? '#' : ' ');
+            }
+            grid.append('\n');
+        }
+        System.out.print(grid);
+    }
+}
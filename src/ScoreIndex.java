@@ -0,0 +1,292 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Orders leaderboard entries by score, highest first, ties going to the
+ * earlier entry. A treap kept in parallel int arrays and indexed by entry
+ * number, so millions of entries cost 16 bytes each and no objects: inserting,
+ * ranking and finding the k-th entry take logarithmic time, and listing the
+ * top k takes O(k + log n).
+ *
+ * Not thread-safe; ScoreLog guards it.
+ */
+class ScoreIndex {
+
+    private static final int NONE = -1;
+
+    private int[] scores;
+    private int[] left;
+    private int[] right;
+    private int[] sizes;
+    private int[] priorities;
+    private int count;
+    private int root = NONE;
+    private final GameRandom random;
+
+    ScoreIndex(int capacity, long seed) {
+        scores = new int[Math.max(16, capacity)];
+        left = new int[scores.length];
+        right = new int[scores.length];
+        sizes = new int[scores.length];
+        priorities = new int[scores.length];
+        random = new GameRandom(seed);
+    }
+
+    /**
+     * Builds the index over entries 0 .. entryCount-1 at once in linear time,
+     * instead of inserting them one at a time.
+     */
+    static ScoreIndex build(int[] entryScores, int entryCount, long seed) {
+        ScoreIndex index = new ScoreIndex(entryCount + entryCount / 4, seed);
+        System.arraycopy(entryScores, 0, index.scores, 0, entryCount);
+        index.count = entryCount;
+        index.buildCartesian(rankOrder(entryScores, entryCount));
+        return index;
+    }
+
+    /**
+     * Sorts the entries into ranking order with a stable LSD radix sort on the
+     * score, 16 bits a pass; entries start out in ascending order, so ties stay
+     * in entry order without comparing them.
+     */
+    private static int[] rankOrder(int[] entryScores, int entryCount) {
+        int[] order = new int[entryCount];
+        for (int entry = 0; entry < entryCount; entry++) order[entry] = entry;
+        int[] sorted = new int[entryCount];
+        int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < 32; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (int entry = 0; entry < entryCount; entry++) counts[digit(entryScores[entry], shift)]++;
+            if (entryCount > 0 && counts[digit(entryScores[0], shift)] == entryCount) continue;
+            for (int d = 0, start = 0; d < counts.length; d++) {
+                int count = counts[d];
+                counts[d] = start;
+                start += count;
+            }
+            for (int i = 0; i < entryCount; i++) {
+                int entry = order[i];
+                sorted[counts[digit(entryScores[entry], shift)]++] = entry;
+            }
+            int[] swap = order;
+            order = sorted;
+            sorted = swap;
+        }
+        return order;
+    }
+
+    /**
+     * @return 16 bits of the score's descending sort key.
+     */
+    private static int digit(int score, int shift) {
+        return ((Integer.MAX_VALUE - score) >>> shift) & 0xFFFF;
+    }
+
+    /**
+     * Ascending key order is ranking order: higher scores first, then earlier entries.
+     */
+    private static long keyOf(int score, int entry) {
+        return (long) (Integer.MAX_VALUE - score) << 32 | entry;
+    }
+
+    private long keyOf(int entry) {
+        return keyOf(scores[entry], entry);
+    }
+
+    /**
+     * Links the sorted entries into a treap with fresh random priorities: the
+     * right spine is kept on a stack, and each entry pops the lower-priority
+     * nodes off it and adopts them as its left subtree.
+     */
+    private void buildCartesian(int[] order) {
+        int[] spine = new int[64];
+        int depth = 0;
+        for (int entry : order) {
+            priorities[entry] = (int) random.nextLong();
+            left[entry] = NONE;
+            right[entry] = NONE;
+            int last = NONE;
+            while (depth > 0 && priorities[spine[depth - 1]] < priorities[entry]) {
+                last = spine[--depth];
+            }
+            left[entry] = last;
+            if (depth > 0) right[spine[depth - 1]] = entry;
+            if (depth == spine.length) spine = Arrays.copyOf(spine, depth * 2);
+            spine[depth++] = entry;
+        }
+        root = depth > 0 ? spine[0] : NONE;
+        computeSizes();
+    }
+
+    /**
+     * Sets every subtree size bottom-up, without recursion.
+     */
+    private void computeSizes() {
+        if (root == NONE) return;
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int lastVisited = NONE;
+        while (node != NONE || depth > 0) {
+            if (node != NONE) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = node;
+                node = left[node];
+            } else {
+                int top = stack[depth - 1];
+                if (right[top] != NONE && lastVisited != right[top]) {
+                    node = right[top];
+                } else {
+                    sizes[top] = 1 + sizeOf(left[top]) + sizeOf(right[top]);
+                    lastVisited = top;
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the next entry; entries must be added in order, starting from count().
+     */
+    void add(int entry, int score) {
+        if (entry != count) throw new IllegalArgumentException("Entry " + entry + " added out of order, expected " + count);
+        if (count == scores.length) grow();
+        scores[entry] = score;
+        left[entry] = NONE;
+        right[entry] = NONE;
+        sizes[entry] = 1;
+        priorities[entry] = (int) random.nextLong();
+        count++;
+        root = insert(root, entry, keyOf(entry));
+    }
+
+    private int insert(int node, int entry, long key) {
+        if (node == NONE) return entry;
+        if (priorities[entry] > priorities[node]) {
+            split(node, key, entry);
+            sizes[entry] = 1 + sizeOf(left[entry]) + sizeOf(right[entry]);
+            return entry;
+        }
+        if (key < keyOf(node)) {
+            left[node] = insert(left[node], entry, key);
+        } else {
+            right[node] = insert(right[node], entry, key);
+        }
+        sizes[node]++;
+        return node;
+    }
+
+    /**
+     * Splits the subtree at node around key into entry's left and right children.
+     */
+    private void split(int node, long key, int entry) {
+        if (node == NONE) {
+            left[entry] = NONE;
+            right[entry] = NONE;
+            return;
+        }
+        if (keyOf(node) < key) {
+            split(right[node], key, entry);
+            right[node] = left[entry];
+            sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+            left[entry] = node;
+        } else {
+            split(left[node], key, entry);
+            left[node] = right[entry];
+            sizes[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+            right[entry] = node;
+        }
+    }
+
+    private void grow() {
+        int capacity = scores.length * 2;
+        scores = Arrays.copyOf(scores, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+
+    private int sizeOf(int node) {
+        return node == NONE ? 0 : sizes[node];
+    }
+
+    /**
+     * @return how many entries scored strictly more than score.
+     */
+    int countAbove(int score) {
+        long key = keyOf(score, 0);
+        int above = 0;
+        int node = root;
+        while (node != NONE) {
+            if (keyOf(node) < key) {
+                above += sizeOf(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return above;
+    }
+
+    /**
+     * @return the entry's 1-based rank.
+     */
+    int rankOf(int entry) {
+        long key = keyOf(entry);
+        int before = 0;
+        int node = root;
+        while (node != NONE) {
+            long nodeKey = keyOf(node);
+            if (nodeKey < key) {
+                before += sizeOf(left[node]) + 1;
+                node = right[node];
+            } else if (nodeKey > key) {
+                node = left[node];
+            } else {
+                return before + sizeOf(left[node]) + 1;
+            }
+        }
+        throw new IllegalArgumentException("No entry " + entry);
+    }
+
+    /**
+     * @return the entry at the 1-based rank.
+     */
+    int entryAt(int rank) {
+        if (rank < 1 || rank > count) throw new IndexOutOfBoundsException("Rank " + rank + " of " + count);
+        int node = root;
+        while (true) {
+            int leftSize = sizeOf(left[node]);
+            if (rank <= leftSize) {
+                node = left[node];
+            } else if (rank == leftSize + 1) {
+                return node;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * Visits entries from the top in ranking order until the visitor returns false.
+     */
+    void visitInOrder(IntPredicate visitor) {
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        while (node != NONE || depth > 0) {
+            while (node != NONE) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = node;
+                node = left[node];
+            }
+            node = stack[--depth];
+            if (!visitor.test(node)) return;
+            node = right[node];
+        }
+    }
+
+    int scoreOf(int entry) { return scores[entry]; }
+    int count() { return count; }
+}
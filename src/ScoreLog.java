@@ -0,0 +1,279 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * One game mode's scores: an append-only file of fixed-size records and the
+ * in-memory index over them. Only a score and a player id per entry stay in
+ * memory; the rest of a record is read back from the file when an entry is
+ * listed.
+ *
+ * File layout: a header (magic, version, mode), then 32-byte records of
+ * score(4) player(4) epochMillis(8) seed(8) crc32c(4) padding(4). Opening the
+ * file reads it in large chunks into primitive arrays and builds the index in
+ * one pass; a torn record at the end, left by a crash mid-append, is cut off.
+ *
+ * Leaderboard's committer thread is the only writer. Reads may come from any
+ * thread.
+ */
+class ScoreLog implements Closeable {
+
+    static final int RECORD_BYTES = 32;
+    private static final int MAGIC = 0x4352534C; // "CRSL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int READ_CHUNK = 1 << 20;
+
+    private final Path path;
+    private final GameMode mode;
+    private FileChannel channel;
+    private ScoreIndex index;
+    private int[] players;
+    private int[] playerBest = new int[16];
+    private long fileBytes;
+    // Held by whoever changes the file: appends and compaction
+    private final Object writing = new Object();
+
+    ScoreLog(Path path, GameMode mode) throws IOException {
+        this.path = path;
+        this.mode = mode;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            writeHeader(channel);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != mode.ordinal()) {
+                channel.close();
+                throw new IOException(path + " is not a " + mode + " score log");
+            }
+        }
+        recover();
+    }
+
+    private void writeHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(mode.ordinal()).putInt(0).flip();
+        target.truncate(0);
+        target.write(header, 0);
+        target.force(true);
+    }
+
+    /**
+     * Loads every whole record into column arrays and indexes them.
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (size - HEADER_BYTES) / RECORD_BYTES);
+        int[] scores = new int[Math.max(16, capacity)];
+        int[] owners = new int[scores.length];
+        int entries = 0;
+        ByteBuffer chunk = ByteBuffer.allocateDirect(READ_CHUNK - READ_CHUNK % RECORD_BYTES);
+        CRC32C crc = new CRC32C();
+        long position = HEADER_BYTES;
+        read:
+        while (position + RECORD_BYTES <= size) {
+            chunk.clear();
+            while (chunk.hasRemaining() && channel.read(chunk, position + chunk.position()) > 0) {
+                // Fill the chunk or reach the end of the file
+            }
+            chunk.flip();
+            while (chunk.remaining() >= RECORD_BYTES) {
+                int start = chunk.position();
+                crc.reset();
+                crc.update(chunk.slice(start, RECORD_BYTES - 8));
+                if ((int) crc.getValue() != chunk.getInt(start + 24)) break read;
+                scores[entries] = chunk.getInt(start);
+                owners[entries] = chunk.getInt(start + 4);
+                entries++;
+                chunk.position(start + RECORD_BYTES);
+                position += RECORD_BYTES;
+            }
+        }
+        if (position != size) {
+            // A torn or damaged tail: everything after the last good record goes
+            channel.truncate(position);
+            channel.force(true);
+        }
+        install(ScoreIndex.build(scores, entries, mode.ordinal()), owners, position);
+    }
+
+    private void install(ScoreIndex newIndex, int[] owners, long newFileBytes) {
+        int[] best = new int[Math.max(16, playerBest.length)];
+        Arrays.fill(best, -1);
+        for (int entry = 0; entry < newIndex.count(); entry++) {
+            int player = owners[entry];
+            if (player >= best.length) best = grown(best, player);
+            if (best[player] < 0 || newIndex.scoreOf(entry) > newIndex.scoreOf(best[player])) best[player] = entry;
+        }
+        synchronized (this) {
+            index = newIndex;
+            players = owners;
+            playerBest = best;
+            fileBytes = newFileBytes;
+        }
+    }
+
+    private static int[] grown(int[] best, int player) {
+        int old = best.length;
+        best = Arrays.copyOf(best, Math.max(old * 2, player + 1));
+        Arrays.fill(best, old, best.length, -1);
+        return best;
+    }
+
+    /**
+     * Writes records to the end of the file and forces them to disk, then
+     * makes them visible to queries. One fsync covers the whole batch.
+     */
+    void append(List<Leaderboard.Submission> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        synchronized (writing) {
+            ByteBuffer records = ByteBuffer.allocate(batch.size() * RECORD_BYTES);
+            CRC32C crc = new CRC32C();
+            for (Leaderboard.Submission submission : batch) {
+                int start = records.position();
+                records.putInt(submission.score).putInt(submission.player)
+                        .putLong(submission.epochMillis).putLong(submission.seed);
+                crc.reset();
+                crc.update(records.slice(start, RECORD_BYTES - 8));
+                records.putInt((int) crc.getValue()).putInt(0);
+            }
+            records.flip();
+            long position = fileBytes;
+            while (records.hasRemaining()) position += channel.write(records, position);
+            channel.force(false);
+            synchronized (this) {
+                for (Leaderboard.Submission submission : batch) {
+                    int entry = index.count();
+                    if (entry == players.length) players = Arrays.copyOf(players, players.length * 2);
+                    players[entry] = submission.player;
+                    index.add(entry, submission.score);
+                    if (submission.player >= playerBest.length) playerBest = grown(playerBest, submission.player);
+                    int best = playerBest[submission.player];
+                    if (best < 0 || submission.score > index.scoreOf(best)) playerBest[submission.player] = entry;
+                    submission.entry = entry;
+                }
+                fileBytes = position;
+                for (Leaderboard.Submission submission : batch) submission.rank = index.rankOf(submission.entry);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file keeping only the top entries and each player's best,
+     * then swaps it in with an atomic rename.
+     * @return how many entries were dropped
+     */
+    int compact(int keepTop) throws IOException {
+        synchronized (writing) {
+            BitSet keep = new BitSet();
+            synchronized (this) {
+                int[] kept = {0};
+                if (keepTop > 0) {
+                    index.visitInOrder(entry -> {
+                        keep.set(entry);
+                        return ++kept[0] < keepTop;
+                    });
+                }
+                for (int best : playerBest) if (best >= 0) keep.set(best);
+            }
+            int before = index.count();
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            int[] scores = new int[Math.max(16, keep.cardinality())];
+            int[] owners = new int[scores.length];
+            int entries = 0;
+            try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                writeHeader(target);
+                ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+                long position = HEADER_BYTES;
+                for (int entry = keep.nextSetBit(0); entry >= 0; entry = keep.nextSetBit(entry + 1)) {
+                    record.clear();
+                    channel.read(record, offsetOf(entry));
+                    record.flip();
+                    scores[entries] = record.getInt(0);
+                    owners[entries] = record.getInt(4);
+                    entries++;
+                    while (record.hasRemaining()) position += target.write(record, position);
+                }
+                target.force(true);
+            }
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            FileChannel reopened = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel old;
+            synchronized (this) {
+                old = channel;
+                channel = reopened;
+            }
+            install(ScoreIndex.build(scores, entries, mode.ordinal()), owners, HEADER_BYTES + (long) entries * RECORD_BYTES);
+            old.close();
+            return before - entries;
+        }
+    }
+
+    private static long offsetOf(int entry) {
+        return HEADER_BYTES + (long) entry * RECORD_BYTES;
+    }
+
+    /**
+     * Reads an entry's full record. The caller must hold this log's lock.
+     */
+    private Leaderboard.Entry read(int entry, IntFunction<String> names) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        channel.read(record, offsetOf(entry));
+        int player = players[entry];
+        return new Leaderboard.Entry(mode, names.apply(player), index.scoreOf(entry), index.rankOf(entry), record.getLong(8), record.getLong(16));
+    }
+
+    synchronized Leaderboard.Entry[] top(int k, IntFunction<String> names) throws IOException {
+        int[] entries = new int[Math.min(k, index.count())];
+        int[] found = {0};
+        if (entries.length > 0) {
+            index.visitInOrder(entry -> {
+                entries[found[0]++] = entry;
+                return found[0] < entries.length;
+            });
+        }
+        Leaderboard.Entry[] top = new Leaderboard.Entry[entries.length];
+        for (int i = 0; i < entries.length; i++) top[i] = read(entries[i], names);
+        return top;
+    }
+
+    synchronized Leaderboard.Entry at(int rank, IntFunction<String> names) throws IOException {
+        return read(index.entryAt(rank), names);
+    }
+
+    synchronized int rankOf(int score) {
+        return index.countAbove(score) + 1;
+    }
+
+    /**
+     * @return the player's best entry, or null if the player has none.
+     */
+    synchronized Leaderboard.Entry best(int player, IntFunction<String> names) throws IOException {
+        if (player < 0 || player >= playerBest.length || playerBest[player] < 0) return null;
+        return read(playerBest[player], names);
+    }
+
+    synchronized int size() {
+        return index.count();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writing) {
+            channel.close();
+        }
+    }
+}
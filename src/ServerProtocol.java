@@ -0,0 +1,114 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The wire format between GameServer and its clients. Every request is one
+ * opcode byte followed by fixed-size big-endian fields, and is answered by one
+ * status byte followed, if the status is OK, by the fields listed:
+ *
+ *   NEW_GAME  mode(1) seed(8)         -> session(4) state
+ *   SWAP      session(4) from(2) to(2) -> points(4) chain(1) state
+ *   STATE     session(4)              -> state
+ *   PAUSE     session(4)              -> state       (toggles the pause)
+ *   CLOSE     session(4)              -> nothing
+ *
+ * A state is mode(1) flags(1) score(4) remaining(4) size(2) and then one jewel
+ * code per cell, row by row (see Jewel.fromCode). remaining is the seconds
+ * left in TIMED mode and the moves left in MOVES mode. A seed of 0 asks the
+ * server for a random game. Cells are numbered row * size + col.
+ */
+public final class ServerProtocol {
+
+    public static final int DEFAULT_PORT = 7707;
+
+    // Requests
+    public static final byte NEW_GAME = 1;
+    public static final byte SWAP = 2;
+    public static final byte STATE = 3;
+    public static final byte PAUSE = 4;
+    public static final byte CLOSE = 5;
+
+    // Response status
+    public static final byte OK = 0;
+    public static final byte NO_SESSION = 1;
+    public static final byte ILLEGAL_SWAP = 2;
+    public static final byte GAME_OVER = 3;
+    public static final byte BAD_REQUEST = 4;
+
+    private static final int PAUSED = 1;
+    private static final int OVER = 2;
+
+    private static final GameMode[] MODES = GameMode.values();
+
+    private ServerProtocol() {}
+
+    /**
+     * A game's state as sent over the wire.
+     */
+    public static final class State {
+        private final GameMode mode;
+        private final boolean paused;
+        private final boolean gameOver;
+        private final int score;
+        private final int remaining;
+        private final int size;
+        private final byte[] codes;
+
+        private State(GameMode mode, boolean paused, boolean gameOver, int score, int remaining, int size, byte[] codes) {
+            this.mode = mode;
+            this.paused = paused;
+            this.gameOver = gameOver;
+            this.score = score;
+            this.remaining = remaining;
+            this.size = size;
+            this.codes = codes;
+        }
+
+        public GameMode getMode() { return mode; }
+        public boolean isPaused() { return paused; }
+        public boolean isGameOver() { return gameOver; }
+        public int getScore() { return score; }
+        public int getRemaining() { return remaining; }
+        public int getSize() { return size; }
+        public int getCode(int cell) { return codes[cell]; }
+
+        /**
+         * @return the jewel at the given cell, or null if it is empty.
+         */
+        public Jewel getJewel(int row, int col) {
+            return Jewel.fromCode(codes[row * size + col]);
+        }
+    }
+
+    public static GameMode modeOf(int ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= MODES.length) throw new IOException("Unknown game mode " + ordinal);
+        return MODES[ordinal];
+    }
+
+    /**
+     * Writes a game's state; the caller must hold the game's lock.
+     */
+    static void writeState(DataOutputStream out, Game game, byte[] scratch) throws IOException {
+        Board board = game.getBoard();
+        out.writeByte(game.getMode().ordinal());
+        out.writeByte((game.isPaused() ? PAUSED : 0) | (game.isGameOver() ? OVER : 0));
+        out.writeInt(game.getScore());
+        out.writeInt(game.getMode() == GameMode.TIMED ? game.getTimerSeconds() : game.getMovesLeft());
+        out.writeShort(board.getSize());
+        board.copyCodes(scratch);
+        out.write(scratch, 0, board.getCellCount());
+    }
+
+    public static State readState(DataInputStream in) throws IOException {
+        GameMode mode = modeOf(in.readUnsignedByte());
+        int flags = in.readUnsignedByte();
+        int score = in.readInt();
+        int remaining = in.readInt();
+        int size = in.readUnsignedShort();
+        if (size < Board.MIN_SIZE || size > Board.MAX_SIZE) throw new IOException("Bad board size " + size);
+        byte[] codes = new byte[size * size];
+        in.readFully(codes);
+        return new State(mode, (flags & PAUSED) != 0, (flags & OVER) != 0, score, remaining, size, codes);
+    }
+}
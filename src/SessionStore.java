@@ -0,0 +1,181 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32C;
+
+/**
+ * Parks games outside the heap in a memory-mapped file of fixed-size slots,
+ * one GameCodec record per slot. Saving or restoring a game is a copy into or
+ * out of the mapping, with no object serialization; the operating system
+ * writes the pages back, and force() makes them durable.
+ *
+ * File layout: a header (magic, version, board size, slot count) and then the
+ * slots. A slot holds a used flag, a session id, the record's length and a
+ * CRC32C of the record, then the record. The flag is written last, and the
+ * checksum catches a slot torn by a crash in the middle of a save; reopening
+ * the file finds the used slots again.
+ *
+ * Safe for concurrent use; saves to different slots run in parallel.
+ */
+public class SessionStore implements Closeable {
+
+    private static final int MAGIC = 0x43525953; // "CRYS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    // used(4) session id(4) length(4) crc(4)
+    private static final int SLOT_HEADER_BYTES = 16;
+    private static final int USED = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int boardSize;
+    private final int slots;
+    private final int slotBytes;
+    private final BitSet used = new BitSet();
+    private int nextFree;
+
+    /**
+     * Opens the store at path, creating it if needed.
+     * @param boardSize cells per side of the games it will hold
+     * @param slots how many games it can hold
+     * @throws IOException also if an existing file was made for another board size or slot count
+     */
+    public SessionStore(Path path, int boardSize, int slots) throws IOException {
+        this.boardSize = boardSize;
+        this.slots = slots;
+        // Slots are padded to 8 bytes so records stay aligned
+        this.slotBytes = (SLOT_HEADER_BYTES + GameCodec.encodedSize(boardSize) + 7) & ~7;
+        long fileBytes = HEADER_BYTES + (long) slots * slotBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A store is limited to 2 GB: " + slots + " slots of " + slotBytes + " bytes");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long existingBytes = channel.size();
+        boolean fresh = existingBytes == 0;
+        if (!fresh && existingBytes != fileBytes) {
+            channel.close();
+            throw new IOException("Store " + path + " has " + existingBytes + " bytes, expected " + fileBytes);
+        }
+        this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        if (fresh) {
+            map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, boardSize).putInt(12, slots);
+        } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+                || map.getInt(8) != boardSize || map.getInt(12) != slots) {
+            channel.close();
+            throw new IOException("Store " + path + " was made for other games or is not a session store");
+        }
+        for (int slot = 0; slot < slots; slot++) {
+            if (map.getInt(offsetOf(slot)) == USED) used.set(slot);
+        }
+    }
+
+    /**
+     * Saves a game into a free slot.
+     * @return the slot, to restore or release it later
+     * @throws IllegalStateException if the store is full
+     */
+    public int park(int sessionId, Game game) {
+        int slot = allocate();
+        save(slot, sessionId, game);
+        return slot;
+    }
+
+    /**
+     * Saves a game into the given slot, replacing what it held.
+     */
+    public void save(int slot, int sessionId, Game game) {
+        if (game.getBoard().getSize() != boardSize) {
+            throw new IllegalArgumentException("This store holds " + boardSize + "x" + boardSize + " games");
+        }
+        ByteBuffer slotBuffer = slice(slot);
+        slotBuffer.putInt(0, 0);
+        ByteBuffer record = slotBuffer.slice(SLOT_HEADER_BYTES, slotBytes - SLOT_HEADER_BYTES);
+        GameCodec.encode(game, record);
+        int length = record.position();
+        CRC32C crc = new CRC32C();
+        crc.update(record.flip());
+        slotBuffer.putInt(4, sessionId).putInt(8, length).putInt(12, (int) crc.getValue());
+        slotBuffer.putInt(0, USED);
+        synchronized (this) {
+            used.set(slot);
+        }
+    }
+
+    /**
+     * @return the game saved in the slot, or null if the slot is free
+     * @throws IllegalStateException if the slot's record is damaged
+     */
+    public Game restore(int slot) {
+        ByteBuffer slotBuffer = slice(slot);
+        if (slotBuffer.getInt(0) != USED) return null;
+        int length = slotBuffer.getInt(8);
+        if (length <= 0 || length > slotBytes - SLOT_HEADER_BYTES) {
+            throw new IllegalStateException("Slot " + slot + " has a bad length " + length);
+        }
+        ByteBuffer record = slotBuffer.slice(SLOT_HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != slotBuffer.getInt(12)) {
+            throw new IllegalStateException("Slot " + slot + " failed its checksum");
+        }
+        return GameCodec.decode(record);
+    }
+
+    /**
+     * @return the session id saved with the slot's game, or -1 if the slot is free.
+     */
+    public int sessionIdAt(int slot) {
+        ByteBuffer slotBuffer = slice(slot);
+        return slotBuffer.getInt(0) == USED ? slotBuffer.getInt(4) : -1;
+    }
+
+    /**
+     * Frees a slot for reuse.
+     */
+    public void release(int slot) {
+        slice(slot).putInt(0, 0);
+        synchronized (this) {
+            used.clear(slot);
+            nextFree = Math.min(nextFree, slot);
+        }
+    }
+
+    private synchronized int allocate() {
+        int slot = used.nextClearBit(nextFree);
+        if (slot >= slots) throw new IllegalStateException("Session store is full: " + slots + " slots");
+        used.set(slot);
+        nextFree = slot + 1;
+        return slot;
+    }
+
+    private ByteBuffer slice(int slot) {
+        if (slot < 0 || slot >= slots) throw new IndexOutOfBoundsException("Slot " + slot + " of " + slots);
+        return map.slice(offsetOf(slot), slotBytes);
+    }
+
+    private int offsetOf(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    public synchronized int size() { return used.cardinality(); }
+    public int capacity() { return slots; }
+    public synchronized boolean isUsed(int slot) { return used.get(slot); }
+
+    /**
+     * Writes every saved game to the disk before returning.
+     */
+    public void force() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays complete games headless with a MovePolicy and reports how they end:
+ * score percentiles, cascade depths, match shapes, power-ups created and how
+ * often a game ends on a dead board, for tuning the time and move limits and
+ * the scoring.
+ *
+ * Games are spread over one thread per core. Game i of a run is seeded from
+ * the run's seed and i alone, and its policy's random stream is reseeded from
+ * the game's seed, so with the random and greedy policies a run's results do
+ * not depend on the thread count. The solver searches to a time budget, so
+ * its runs depend on the machine's load and are not reproducible.
+ * TIMED games have no wall clock here: every swap costs -moveMillis of game
+ * time, for thinking and watching the cascade. With -deadBoards shuffle, a
+ * dead board is reshuffled instead of ending the game.
+ *
+ *   java -cp out Simulator [-n gamesPerMode] [-policy random|greedy|solver]
+ *        [-mode TIMED|MOVES] [-threads n] [-seed n] [-moveMillis n]
+ *        [-deadBoards end|shuffle]
+ */
+public class Simulator {
+
+    private static final int GAMES_PER_CLAIM = 64;
+    private static final int MAX_DEPTH = 16;
+    private static final int SCORE_BUCKET = 10;
+
+    private long gamesPerMode = 100_000;
+    private String policy = "random";
+    private GameMode[] modes = GameMode.values();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+    private int moveMillis = 2000;
+    private DeadBoardRule deadBoardRule = DeadBoardRule.END_GAME;
+
+    private final AtomicLong nextGame = new AtomicLong();
+    private final LongAdder gamesDone = new LongAdder();
+    private final LongAdder turnsDone = new LongAdder();
+
+    public static void main(String[] args) throws InterruptedException {
+        Simulator simulator = new Simulator();
+        simulator.parseArgs(args);
+        simulator.run(System.out);
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n": gamesPerMode = Long.parseLong(args[++i]); break;
+                case "-policy": policy = args[++i]; break;
+                case "-mode": modes = new GameMode[] {GameMode.valueOf(args[++i].toUpperCase())}; break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                case "-seed": seed = Long.parseLong(args[++i]); break;
+                case "-moveMillis": moveMillis = Integer.parseInt(args[++i]); break;
+                case "-deadBoards": deadBoardRule = parseDeadBoardRule(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        MovePolicy.checkName(policy); // Fail before starting threads
+    }
+
+    private static DeadBoardRule parseDeadBoardRule(String name) {
+        switch (name) {
+            case "end": return DeadBoardRule.END_GAME;
+            case "shuffle": return DeadBoardRule.SHUFFLE;
+            default: throw new IllegalArgumentException("Unknown dead-board rule " + name + "; use end or shuffle");
+        }
+    }
+
+    private void run(PrintStream out) throws InterruptedException {
+        long totalGames = gamesPerMode * modes.length;
+        out.printf("%d games (%d per mode) with the %s policy on %d threads, seed %d, dead boards %s%n",
+                totalGames, gamesPerMode, policy, threads, seed,
+                deadBoardRule == DeadBoardRule.SHUFFLE ? "shuffled" : "end the game");
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Worker worker = new Worker(totalGames);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long lastGames = 0;
+        long lastReport = start;
+        while (gamesDone.sum() < totalGames && workers.stream().anyMatch(Thread::isAlive)) {
+            Thread.sleep(100);
+            long now = System.nanoTime();
+            if (now - lastReport >= 1_000_000_000L) {
+                long games = gamesDone.sum();
+                out.printf("  %,d games, %,.0f games/s%n", games, (games - lastGames) / ((now - lastReport) / 1e9));
+                lastGames = games;
+                lastReport = now;
+            }
+        }
+        for (Worker worker : workers) worker.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<GameMode, Stats> merged = new EnumMap<>(GameMode.class);
+        for (GameMode mode : modes) merged.put(mode, new Stats());
+        for (Worker worker : workers) {
+            for (GameMode mode : modes) merged.get(mode).add(worker.stats.get(mode));
+        }
+        out.printf("%,d games and %,d turns in %.2f s: %,.0f games/s, %,.0f turns/s%n",
+                gamesDone.sum(), turnsDone.sum(), seconds, gamesDone.sum() / seconds, turnsDone.sum() / seconds);
+        for (GameMode mode : modes) merged.get(mode).print(out, mode);
+    }
+
+    /**
+     * Claims games in blocks and plays them into its own stats.
+     */
+    private final class Worker extends Thread {
+        final Map<GameMode, Stats> stats = new EnumMap<>(GameMode.class);
+        private final long totalGames;
+        private final MovePolicy moves = MovePolicy.forName(policy);
+        private final GameRandom random = new GameRandom(0L);
+        private final TurnEngine engine = new TurnEngine();
+
+        Worker(long totalGames) {
+            super("crystalyze-simulator");
+            setDaemon(true);
+            this.totalGames = totalGames;
+            for (GameMode mode : modes) stats.put(mode, new Stats());
+        }
+
+        @Override
+        public void run() {
+            try (moves) {
+                while (true) {
+                    long first = nextGame.getAndAdd(GAMES_PER_CLAIM);
+                    if (first >= totalGames) return;
+                    long last = Math.min(totalGames, first + GAMES_PER_CLAIM);
+                    for (long game = first; game < last; game++) {
+                        GameMode mode = modes[(int) (game % modes.length)];
+                        play(mode, gameSeed(game), stats.get(mode));
+                    }
+                    gamesDone.add(last - first);
+                }
+            }
+        }
+
+        private void play(GameMode mode, long gameSeed, Stats into) {
+            Game game = new Game(mode, gameSeed);
+            game.setDeadBoardRule(deadBoardRule);
+            random.reseed(gameSeed ^ 0x5DEECE66DL);
+            int turns = 0;
+            long clockMillis = 0;
+            while (!game.isGameOver()) {
+                if (mode == GameMode.TIMED) {
+                    clockMillis += moveMillis;
+                    for (; clockMillis >= 1000 && !game.isGameOver(); clockMillis -= 1000) game.decrementTimer();
+                    if (game.isGameOver()) break;
+                }
+                int swap = moves.choose(game, random);
+                if (swap == MovePolicy.NO_MOVE) {
+                    game.endGame();
+                    break;
+                }
+                TurnResult result = engine.play(game, MovePolicy.fromCell(swap), MovePolicy.toCell(swap));
+                if (!result.isValid()) throw new IllegalStateException("Policy " + policy + " chose an illegal swap");
+                into.depths[Math.min(MAX_DEPTH - 1, result.getChainDepth())]++;
+                turns++;
+            }
+            boolean outOfTurns = mode == GameMode.TIMED ? game.getTimerSeconds() == 0 : game.getMovesLeft() == 0;
+            into.record(game.getScore(), turns, !outOfTurns, game.getBoard());
+            turnsDone.add(turns);
+        }
+    }
+
+    /**
+     * Spreads game numbers over the seed space, so neighbouring games are unrelated.
+     */
+    private long gameSeed(long game) {
+        long z = seed + (game + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * One mode's results: an exact score histogram in buckets of 10 points,
+     * cascade depths per turn, and totals.
+     */
+    private static final class Stats {
+        long[] scores = new long[512];
+        final long[] depths = new long[MAX_DEPTH];
+        long games;
+        long turns;
+        long deadBoards;
+        long flameGems;
+        long hyperCubes;
+        long shuffles;
+        final long[] shapes = new long[MatchShape.values().length];
+        long scoreSum;
+        int maxScore;
+
+        void record(int score, int gameTurns, boolean deadBoard, Board board) {
+            int bucket = score / SCORE_BUCKET;
+            if (bucket >= scores.length) scores = Arrays.copyOf(scores, Math.max(bucket + 1, scores.length * 2));
+            scores[bucket]++;
+            games++;
+            turns += gameTurns;
+            if (deadBoard) deadBoards++;
+            flameGems += board.getPowerUpsCreated(PowerUpType.FLAME_GEM);
+            hyperCubes += board.getPowerUpsCreated(PowerUpType.HYPER_CUBE);
+            shuffles += board.getShuffles();
+            for (MatchShape shape : MatchShape.values()) shapes[shape.ordinal()] += board.getShapesCleared(shape);
+            scoreSum += score;
+            maxScore = Math.max(maxScore, score);
+        }
+
+        void add(Stats other) {
+            if (other.scores.length > scores.length) scores = Arrays.copyOf(scores, other.scores.length);
+            for (int i = 0; i < other.scores.length; i++) scores[i] += other.scores[i];
+            for (int i = 0; i < MAX_DEPTH; i++) depths[i] += other.depths[i];
+            games += other.games;
+            turns += other.turns;
+            deadBoards += other.deadBoards;
+            flameGems += other.flameGems;
+            hyperCubes += other.hyperCubes;
+            shuffles += other.shuffles;
+            for (int i = 0; i < shapes.length; i++) shapes[i] += other.shapes[i];
+            scoreSum += other.scoreSum;
+            maxScore = Math.max(maxScore, other.maxScore);
+        }
+
+        int percentile(double p) {
+            long rank = (long) Math.ceil(p * games);
+            long seen = 0;
+            for (int bucket = 0; bucket < scores.length; bucket++) {
+                seen += scores[bucket];
+                if (seen >= Math.max(1, rank)) return bucket * SCORE_BUCKET;
+            }
+            return maxScore;
+        }
+
+        void print(PrintStream out, GameMode mode) {
+            if (games == 0) return;
+            out.printf("%n%s: %,d games, %.1f turns per game%n", mode, games, (double) turns / games);
+            out.printf("  score  mean %.0f  p1 %d  p10 %d  p25 %d  p50 %d  p75 %d  p90 %d  p99 %d  max %d%n",
+                    (double) scoreSum / games, percentile(0.01), percentile(0.10), percentile(0.25), percentile(0.50),
+                    percentile(0.75), percentile(0.90), percentile(0.99), maxScore);
+            out.printf("  power-ups per game  flame gems %.2f  hyper cubes %.3f%n",
+                    (double) flameGems / games, (double) hyperCubes / games);
+            out.print("  matches per game ");
+            for (MatchShape shape : MatchShape.values()) out.printf(" %s %.2f", shape, (double) shapes[shape.ordinal()] / games);
+            out.println();
+            out.printf("  dead boards  %,d games (%.2f%%) ended with %s left, %.3f shuffles per game%n", deadBoards,
+                    100.0 * deadBoards / games, mode == GameMode.TIMED ? "time" : "moves", (double) shuffles / games);
+            out.println("  cascade depth per turn");
+            long totalTurns = Math.max(1, turns);
+            for (int depth = 1; depth < MAX_DEPTH; depth++) {
+                if (depths[depth] == 0) continue;
+                double share = 100.0 * depths[depth] / totalTurns;
+                out.printf("    %2d%s %7.3f%%  %s%n", depth, depth == MAX_DEPTH - 1 ? "+" : " ", share,
+                        "#".repeat((int) Math.ceil(share / 2)));
+            }
+        }
+    }
+}
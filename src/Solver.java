@@ -0,0 +1,223 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the swap with the most expected points over the next few moves, for
+ * the in-game hint and for automated players.
+ *
+ * The search is an expectimax: every legal swap is played through TurnEngine,
+ * so cascades, Flame Gems and Hyper Cubes count exactly as in a game, and the
+ * random refills are averaged over a few samples. The samples of a position
+ * are seeded from its Zobrist hash, so a position always gets the same refills
+ * and its value can be shared through the transposition table.
+ *
+ * Root swaps are searched in parallel on a ForkJoinPool with iterative
+ * deepening: each depth is searched in turn until the time budget runs out,
+ * and the answer comes from the deepest search that completed.
+ */
+public class Solver {
+
+    public static final int DEFAULT_SAMPLES = 3;
+    public static final int DEFAULT_MAX_DEPTH = 4;
+    private static final int DEFAULT_TABLE_BITS = 18;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int samples;
+    private final int maxDepth;
+
+    public Solver() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SAMPLES, DEFAULT_MAX_DEPTH, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @param samples refills averaged per swap
+     * @param maxDepth deepest look-ahead, in moves
+     * @param tableBits log2 of the transposition table's slot count
+     */
+    public Solver(ForkJoinPool pool, int samples, int maxDepth, int tableBits) {
+        this.pool = pool;
+        this.samples = samples;
+        this.maxDepth = maxDepth;
+        this.table = new TranspositionTable(tableBits);
+    }
+
+    /**
+     * Searches the given board, which must be settled and must not change
+     * until this returns.
+     */
+    public SolverResult solve(Board board, long budgetMillis) {
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1_000_000L;
+        Board root = new Board(new GameRandom(0L));
+        root.copyFrom(board);
+        int[][] moves = rootMoves(root);
+        if (moves.length == 0) {
+            return new SolverResult(null, 0, 0, 0, System.nanoTime() - start);
+        }
+
+        LongAdder nodes = new LongAdder();
+        int bestMove = 0;
+        double bestValue = Double.NaN;
+        int completedDepth = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            List<RootTask> tasks = new ArrayList<>(moves.length);
+            for (int[] move : moves) {
+                RootTask task = new RootTask(root, move[0], move[1], depth, deadline, nodes);
+                tasks.add(task);
+                pool.execute(task);
+            }
+            int iterationBest = -1;
+            double iterationValue = Double.NaN;
+            for (int i = 0; i < tasks.size(); i++) {
+                double value = tasks.get(i).join();
+                if (!Double.isNaN(value) && (iterationBest < 0 || value > iterationValue)) {
+                    iterationBest = i;
+                    iterationValue = value;
+                }
+            }
+            boolean complete = true;
+            for (RootTask task : tasks) complete &= !task.timedOut;
+            // A partial search only stands in when nothing completed yet.
+            if (complete || (completedDepth == 0 && iterationBest >= 0)) {
+                bestMove = iterationBest;
+                bestValue = iterationValue;
+            }
+            if (!complete) break;
+            completedDepth = depth;
+        }
+
+        Move move = new Move(root.toPoint(moves[bestMove][0]), root.toPoint(moves[bestMove][1]));
+        double expected = Double.isNaN(bestValue) ? 0 : bestValue;
+        return new SolverResult(move, expected, completedDepth, nodes.sum(), System.nanoTime() - start);
+    }
+
+    public int getSamples() { return samples; }
+    public int getMaxDepth() { return maxDepth; }
+    public ForkJoinPool getPool() { return pool; }
+
+    private static int[][] rootMoves(Board board) {
+        MoveIndex index = board.getMoveIndex();
+        int[][] moves = new int[index.countMoves()][];
+        int count = 0;
+        for (long right = index.getSwapsRight(); right != 0L; right &= right - 1) {
+            int cell = Long.numberOfTrailingZeros(right);
+            moves[count++] = new int[] {cell, cell + 1};
+        }
+        for (long down = index.getSwapsDown(); down != 0L; down &= down - 1) {
+            int cell = Long.numberOfTrailingZeros(down);
+            moves[count++] = new int[] {cell, cell + board.getSize()};
+        }
+        return moves;
+    }
+
+    /**
+     * @return the seed for one refill sample of a swap; depends only on the position.
+     */
+    private static long refillSeed(long hash, int from, int to, int sample) {
+        return hash + 0x9e3779b97f4a7c15L * (((long) from * 64 + to) * 16 + sample + 1);
+    }
+
+    private static final class SearchTimeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SearchTimeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+    /**
+     * Searches one root swap. Returns NaN if the deadline passed first.
+     */
+    private final class RootTask extends RecursiveTask<Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board root;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final long deadline;
+        private final LongAdder totalNodes;
+        private volatile boolean timedOut;
+
+        // One scratch board per level of look-ahead, reused by every sample.
+        private Board[] boards;
+        private final TurnEngine engine = new TurnEngine();
+        private long nodes;
+
+        RootTask(Board root, int from, int to, int depth, long deadline, LongAdder totalNodes) {
+            this.root = root;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.deadline = deadline;
+            this.totalNodes = totalNodes;
+        }
+
+        @Override
+        protected Double compute() {
+            boards = new Board[depth];
+            for (int i = 0; i < depth; i++) boards[i] = new Board(new GameRandom(0L));
+            try {
+                return expected(root, from, to, depth, 0);
+            } catch (SearchTimeout e) {
+                timedOut = true;
+                return Double.NaN;
+            } finally {
+                totalNodes.add(nodes);
+            }
+        }
+
+        /**
+         * @return the mean over the refill samples of the swap's points plus the
+         * value of the position it leads to.
+         */
+        private double expected(Board board, int fromCell, int toCell, int depth, int level) {
+            Board child = boards[level];
+            long hash = board.getHash();
+            double total = 0;
+            for (int sample = 0; sample < samples; sample++) {
+                child.copyFrom(board);
+                child.getRandom().reseed(refillSeed(hash, fromCell, toCell, sample));
+                TurnResult result = engine.play(new Game(GameMode.TIMED, child), fromCell, toCell);
+                nodes++;
+                total += result.getPoints();
+                if (!result.isGameOver() && depth > 1) {
+                    total += value(child, depth - 1, level + 1);
+                }
+            }
+            return total / samples;
+        }
+
+        /**
+         * @return the most expected points reachable from a settled position in
+         * the given number of moves.
+         */
+        private double value(Board board, int depth, int level) {
+            if (System.nanoTime() > deadline) throw TIMEOUT;
+            long hash = board.getHash();
+            double cached = table.probe(hash, depth);
+            if (!Double.isNaN(cached)) return cached;
+
+            MoveIndex index = board.getMoveIndex();
+            long right = index.getSwapsRight();
+            long down = index.getSwapsDown();
+            double best = 0;
+            for (; right != 0L; right &= right - 1) {
+                int cell = Long.numberOfTrailingZeros(right);
+                best = Math.max(best, expected(board, cell, cell + 1, depth, level));
+            }
+            for (; down != 0L; down &= down - 1) {
+                int cell = Long.numberOfTrailingZeros(down);
+                best = Math.max(best, expected(board, cell, cell + board.getSize(), depth, level));
+            }
+            table.store(hash, depth, best);
+            return best;
+        }
+    }
+}
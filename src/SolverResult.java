@@ -0,0 +1,39 @@
+/**
+ * The answer of one Solver search.
+ */
+public class SolverResult {
+
+    private final Move move;
+    private final double expectedPoints;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    SolverResult(Move move, double expectedPoints, int depth, long nodes, long elapsedNanos) {
+        this.move = move;
+        this.expectedPoints = expectedPoints;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /** @return the best swap found, or null if the board has no legal move. */
+    public Move getMove() { return move; }
+    /** @return the expected points of the best swap over the searched depth. */
+    public double getExpectedPoints() { return expectedPoints; }
+    /** @return the number of moves looked ahead by the last completed search. */
+    public int getDepth() { return depth; }
+    /** @return the number of turns simulated, across all threads. */
+    public long getNodes() { return nodes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %.1f points, depth %d, %d nodes, %.0f nodes/s",
+                move, expectedPoints, depth, nodes, getNodesPerSecond());
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the clocks of every TIMED session from a single scheduler thread, with
+ * no timer or thread per game.
+ *
+ * Sessions are spread over SLOTS slots by when they joined, and one slot is
+ * visited every second / SLOTS, so each session is ticked once a second within
+ * one slot of its own phase, and the work of a second is spread over it
+ * instead of landing at once.
+ */
+public class TickWheel {
+
+    private static final int SLOTS = 10;
+    private static final long SLOT_MILLIS = 1000 / SLOTS;
+
+    private final List<Set<GameSession>> slots;
+    private final ScheduledExecutorService scheduler;
+    private volatile int cursor;
+
+    public TickWheel() {
+        List<Set<GameSession>> wheel = new ArrayList<>(SLOTS);
+        for (int i = 0; i < SLOTS; i++) wheel.add(ConcurrentHashMap.newKeySet());
+        slots = List.copyOf(wheel);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "crystalyze-ticks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, SLOT_MILLIS, SLOT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts ticking a session; its first tick comes about a second from now.
+     */
+    public void add(GameSession session) {
+        // The slot visited last comes round again in a second
+        slots.get((cursor + SLOTS - 1) % SLOTS).add(session);
+    }
+
+    public void remove(GameSession session) {
+        for (Set<GameSession> slot : slots) slot.remove(session);
+    }
+
+    private void tick() {
+        Set<GameSession> slot = slots.get(cursor);
+        cursor = (cursor + 1) % SLOTS;
+        for (GameSession session : slot) {
+            if (session.tick()) slot.remove(session);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Set<GameSession> slot : slots) size += slot.size();
+        return size;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
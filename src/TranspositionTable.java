@@ -0,0 +1,47 @@
+/**
+ * A fixed-size, lock-free cache of search values keyed by Zobrist hash, shared
+ * by all solver threads.
+ *
+ * Each slot holds a data word (value and depth) and the key XORed with that
+ * word. A reader accepts an entry only if the two words still XOR to its key,
+ * so an entry torn by two threads writing at once reads as a miss instead of a
+ * wrong value. Collisions simply overwrite.
+ */
+public class TranspositionTable {
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * @param bits log2 of the number of slots; each slot takes 16 bytes.
+     */
+    public TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    /**
+     * @return the value stored for this position and search depth, or NaN.
+     */
+    public double probe(long hash, int depth) {
+        int slot = (int) hash & mask;
+        long word = data[slot];
+        if ((keys[slot] ^ word) != hash || (int) (word & 0xFF) != depth) {
+            return Double.NaN;
+        }
+        return Float.intBitsToFloat((int) (word >>> 32));
+    }
+
+    public void store(long hash, int depth, double value) {
+        int slot = (int) hash & mask;
+        long word = ((long) Float.floatToIntBits((float) value) << 32) | (depth & 0xFF);
+        data[slot] = word;
+        keys[slot] = hash ^ word;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,169 @@
+import java.awt.Point;
+
+/**
+ * Resolves turns synchronously with no dependency on Swing timers or a GUI.
+ * play runs a whole turn at machine speed; GameController either drives the
+ * same steps one at a time and animates in between, or resolves the cascade
+ * up front with resolveCascade and plays the timeline back.
+ *
+ * An engine reuses its TurnResult, so after warm-up a turn played through
+ * play(Game, int, int) allocates nothing beyond the jewels it spawns.
+ */
+public class TurnEngine {
+
+    public static final int POINTS_PER_JEWEL = 10;
+
+    private final TurnResult result = new TurnResult();
+
+    /**
+     * Convenience for one-off callers; allocates a fresh engine and result.
+     */
+    public static TurnResult playMove(Game game, Point from, Point to) {
+        Board board = game.getBoard();
+        return new TurnEngine().play(game, board.cellOf(from.x, from.y), board.cellOf(to.x, to.y));
+    }
+
+    /**
+     * Swaps two adjacent cells and resolves the full cascade: matches, power-up
+     * creation, scoring with the chain multiplier, collapse and refill.
+     * @return the outcome, overwritten by this engine's next call; an invalid
+     * result leaves the game untouched.
+     */
+    public TurnResult play(Game game, int fromCell, int toCell) {
+        Board board = game.getBoard();
+        if (game.isGameOver() || !board.isAdjacent(fromCell, toCell) || !trySwap(game, fromCell, toCell)) {
+            result.reset(false);
+            return result;
+        }
+        result.reset(true);
+        int chain = 1;
+        while (true) {
+            CellSet matches = board.findMatches();
+            if (matches.isEmpty()) break;
+            CascadeStep step = result.nextStep(board);
+            step.reset(chain, matches);
+            clear(game, step);
+            collapse(game, step);
+            refill(game);
+            chain++;
+        }
+        result.setGameOver(settle(game));
+        return result;
+    }
+
+    /**
+     * Resolves the cascade after a kept swap through the same steps the GUI
+     * drives one at a time, recording each link for playback, then settles it.
+     * Reports a Turn event and a CascadeStep event per link; turns played
+     * through play, by the solver and the benchmarks, are not recorded.
+     */
+    public static CascadeTimeline resolveCascade(Game game) {
+        long start = System.nanoTime();
+        GameEvents.TurnEvent turn = new GameEvents.TurnEvent();
+        turn.begin();
+        Board board = game.getBoard();
+        CascadeTimeline timeline = new CascadeTimeline(board);
+        byte[] before = new byte[board.getCellCount()];
+        board.copyCodes(before);
+        for (int chain = 1; ; chain++) {
+            GameEvents.CascadeStepEvent event = new GameEvents.CascadeStepEvent();
+            event.begin();
+            CascadeStep step = findStep(game, chain);
+            if (step == null) break;
+            clear(game, step);
+            byte[] cleared = new byte[board.getCellCount()];
+            board.copyCodes(cleared);
+            collapse(game, step);
+            refill(game);
+            byte[] after = new byte[board.getCellCount()];
+            board.copyCodes(after);
+            timeline.add(new CascadeTimeline.Link(board, step, before, cleared, after));
+            before = after;
+            event.end();
+            if (event.shouldCommit()) {
+                event.chain = chain;
+                event.cleared = step.getClearedCount();
+                event.points = step.getPoints();
+                event.commit();
+            }
+        }
+        timeline.setGameOver(settle(game));
+        turn.end();
+        if (turn.shouldCommit()) {
+            turn.chainDepth = timeline.getChainDepth();
+            for (CascadeTimeline.Link link : timeline.getLinks()) turn.cleared += link.getClearedCount();
+            turn.points = timeline.getPoints();
+            turn.gameOver = timeline.isGameOver();
+            turn.commit();
+        }
+        Metrics.TURN.recordSince(start);
+        return timeline;
+    }
+
+    public static boolean trySwap(Game game, Point from, Point to) {
+        Board board = game.getBoard();
+        return trySwap(game, board.cellOf(from.x, from.y), board.cellOf(to.x, to.y));
+    }
+
+    /**
+     * Performs the swap if it is legal and charges a move in MOVES mode.
+     * @return true if the swap was kept.
+     */
+    public static boolean trySwap(Game game, int fromCell, int toCell) {
+        if (!game.getBoard().checkAndPerformSwap(fromCell, toCell)) {
+            return false;
+        }
+        if (game.getMode() == GameMode.MOVES) {
+            game.decrementMoves();
+        }
+        return true;
+    }
+
+    /**
+     * @return the next link of the cascade, or null once the board is stable.
+     */
+    public static CascadeStep findStep(Game game, int chain) {
+        Board board = game.getBoard();
+        CellSet matches = board.findMatches();
+        if (matches.isEmpty()) {
+            return null;
+        }
+        CascadeStep step = new CascadeStep(board);
+        step.reset(chain, matches);
+        return step;
+    }
+
+    /**
+     * Clears the step's matches (and blast areas), creates power-ups and awards
+     * 10 points per cleared jewel times the chain depth.
+     */
+    public static void clear(Game game, CascadeStep step) {
+        int cleared = game.getBoard().clearAndCreatePowerUps();
+        int points = cleared * POINTS_PER_JEWEL * step.getChain();
+        game.addToScore(points);
+        step.setCleared(cleared, points);
+    }
+
+    public static void collapse(Game game, CascadeStep step) {
+        step.collapse();
+    }
+
+    public static void refill(Game game) {
+        game.getBoard().refillGrid();
+    }
+
+    /**
+     * Called once the cascade has settled. Ends the game if the time or moves
+     * ran out, or if the board has no legal move left and the game's
+     * DeadBoardRule does not shuffle it into one.
+     * @return true if the game is over.
+     */
+    public static boolean settle(Game game) {
+        if (game.isGameOver()) return true;
+        Board board = game.getBoard();
+        if (board.hasValidMoves()) return false;
+        if (game.getDeadBoardRule() == DeadBoardRule.SHUFFLE && board.shuffle()) return false;
+        game.endGame();
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of one move resolved by TurnEngine.
+ * A TurnEngine reuses its result and the steps inside it from turn to turn.
+ */
+public class TurnResult {
+
+    private boolean valid;
+    private final List<CascadeStep> steps = new ArrayList<>();
+    private int depth;
+    private boolean gameOver;
+
+    void reset(boolean valid) {
+        this.valid = valid;
+        this.depth = 0;
+        this.gameOver = false;
+    }
+
+    /**
+     * @return a step for the next link, reusing one from an earlier turn on the
+     * same board if possible.
+     */
+    CascadeStep nextStep(Board board) {
+        if (depth == steps.size()) {
+            steps.add(new CascadeStep(board));
+        } else if (!steps.get(depth).isFor(board)) {
+            // One engine may play many games, e.g. a server connection's sessions
+            steps.set(depth, new CascadeStep(board));
+        }
+        return steps.get(depth++);
+    }
+
+    void setGameOver(boolean gameOver) {
+        this.gameOver = gameOver;
+    }
+
+    /** @return false if the swap was rejected and the board left unchanged. */
+    public boolean isValid() { return valid; }
+    public boolean isGameOver() { return gameOver; }
+    public int getChainDepth() { return depth; }
+    public CascadeStep getStep(int index) { return steps.get(index); }
+    public List<CascadeStep> getSteps() { return Collections.unmodifiableList(steps.subList(0, depth)); }
+
+    public int getPoints() {
+        int points = 0;
+        for (int i = 0; i < depth; i++) points += steps.get(i).getPoints();
+        return points;
+    }
+
+    public int getClearedCount() {
+        int cleared = 0;
+        for (int i = 0; i < depth; i++) cleared += steps.get(i).getClearedCount();
+        return cleared;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Zobrist keys for board positions: one random 64-bit key per (cell, jewel code).
+ * A board's hash is the XOR of the keys of its cells, so changing one cell
+ * updates the hash with two XORs. Empty cells have key 0.
+ * Keys for the cells of an 8x8 board are tabled; keys for larger boards are
+ * computed by mixing the cell and code. Both are fixed, so hashes are stable
+ * from run to run.
+ */
+public final class Zobrist {
+
+    private static final int CODES = 22;
+    private static final int TABLED_CELLS = 64;
+    private static final long SEED = 0x5DEECE66DL;
+    private static final long[] KEYS = new long[TABLED_CELLS * CODES];
+
+    static {
+        for (int cell = 0; cell < TABLED_CELLS; cell++) {
+            for (int code = 1; code < CODES; code++) {
+                KEYS[cell * CODES + code] = mix(cell, code);
+            }
+        }
+    }
+
+    private Zobrist() {}
+
+    public static long key(int cell, int code) {
+        if (cell < TABLED_CELLS) return KEYS[cell * CODES + code];
+        return code == Jewel.EMPTY_CODE ? 0L : mix(cell, code);
+    }
+
+    private static long mix(int cell, int code) {
+        long z = SEED + 0x9e3779b97f4a7c15L * ((long) cell * CODES + code);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}